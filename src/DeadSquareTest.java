@@ -1,5 +1,6 @@
 import java.io.File;
 
+import game.board.DeadSquares;
 import game.board.compact.*;
 import game.board.oop.*;
 
@@ -40,12 +41,12 @@ public class DeadSquareTest {
 
             BoardCompact bc = board.makeBoardCompact();
 
-            boolean[][] dead = DeadSquareDetector.detect(bc);
+            DeadSquares dead = DeadSquares.forLevel(bc);
             
-            System.out.println("dead squares: \n");
+            System.out.println("dead squares: " + dead.getDeadCount() + "\n");
             for (int y = 0 ; y < bc.height() ; ++y) {
                 for (int x = 0 ; x < bc.width() ; ++x)
-                    System.out.print(CTile.isWall(bc.tile(x, y)) ? '#' : (dead[x][y] ? 'X' : '_'));
+                    System.out.print(CTile.isWall(bc.tile(x, y)) ? '#' : (dead.isDead(x, y) ? 'X' : '_'));
                 System.out.println();
             }
             System.out.println();
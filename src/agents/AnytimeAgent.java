@@ -0,0 +1,63 @@
+package agents;
+
+import java.util.List;
+
+import agents.search.AnytimeAStarEngine;
+import agents.search.LevelTables;
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+
+/**
+ * Anytime weighted A* over pushes ({@link AnytimeAStarEngine}): finds a plan quickly with a high heuristic weight and keeps improving it
+ * while the level time allows; the best plan so far is played a little before the level times out.
+ * <br/>
+ * Heuristic and pruning: {@link LevelTables}.
+ *
+ * @author Jimmy
+ */
+public class AnytimeAgent extends ArtificialAgent {
+
+	/**
+	 * Time left for playing the plan after the search.
+	 */
+	protected static final long DEADLINE_MARGIN_MILLIS = 200;
+
+	protected AnytimeAStarEngine engine = new AnytimeAStarEngine();
+
+	@Override
+	protected List<EDirection> think(BoardCompact board) {
+		// INIT SEARCH
+		LevelTables tables = LevelTables.forLevel(board);
+		engine.getEngine().setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+
+		long deadline = deadlineMillis == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineMillis - DEADLINE_MARGIN_MILLIS;
+
+		// FIRE THE SEARCH
+
+		long searchStartMillis = System.currentTimeMillis();
+
+		List<EDirection> result = engine.search(board, deadline);
+
+		long searchTime = System.currentTimeMillis() - searchStartMillis;
+
+        if (verbose) {
+            System.out.println("SEARCH TOOK:   " + searchTime + " ms");
+            System.out.println("ITERATIONS:    " + engine.getIterations());
+            System.out.println("SOLUTION:      " + (result == null ? "NOT FOUND" : "FOUND in " + result.size() + " steps (" + engine.getBestCost() + " pushes" + (engine.isOptimal() ? ", optimal)" : ")")));
+            System.out.println("=================");
+        }
+
+		if (result == null || result.size() == 0) {
+            return null;
+		}
+
+		return result;
+	}
+
+	@Override
+	public void stop() {
+		engine.stop();
+		super.stop();
+	}
+
+}
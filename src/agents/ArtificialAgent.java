@@ -19,6 +19,11 @@ public abstract class ArtificialAgent implements IAgent {
     private RuntimeException agentException;
     
     protected boolean optimal, verbose;
+    
+    /**
+     * System.currentTimeMillis() the current level times out at; Long.MAX_VALUE == no timeout.
+     */
+    protected volatile long deadlineMillis = Long.MAX_VALUE;
 
     @Override
     public void init(boolean optimal, boolean verbose) {
@@ -31,6 +36,12 @@ public abstract class ArtificialAgent implements IAgent {
 		actions = null;
 		board = null;
 		agentException = null;
+		deadlineMillis = Long.MAX_VALUE;
+	}
+	
+	@Override
+	public void deadline(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
 	}
 
 	@Override
@@ -0,0 +1,75 @@
+package agents;
+
+import java.util.List;
+
+import agents.search.IDAStarEngine;
+import agents.search.LevelTables;
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+
+/**
+ * Push-optimal IDA* ({@link IDAStarEngine}); unlike {@link DFS1Agent} / {@link DFS2Agent} it is not depth-limited,
+ * and unlike A* its memory stays flat (the transposition table) however long it searches.
+ * <br/>
+ * Heuristic: sum of Manhattan distances of the boxes to their nearest goals (admissible for pushes).
+ * Pruning ({@link game.board.DeadlockDetector}): boxes pushed onto a dead square, into a frozen 2x2 square or into a freeze deadlock,
+ * and states whose boxes cannot be matched to distinct reachable goals ({@link game.board.GoalMatching}); PI-corrals ({@link agents.search.CorralAnalyzer}).
+ * 
+ * @author Jimmy
+ */
+public class IDAStarAgent extends ArtificialAgent {
+
+	protected IDAStarEngine engine = new IDAStarEngine();
+	
+	protected BoardCompact board;
+	
+	/**
+	 * Heuristic and pruning tables of the current level, see {@link LevelTables}.
+	 */
+	protected LevelTables tables;
+	
+	@Override
+	protected List<EDirection> think(BoardCompact board) {
+		// INIT SEARCH
+		this.board = board;
+		prepare(board);
+		engine.setHeuristic(this::heuristic).setPruning(tables.deadlockPruning).setCorralPruning(true);
+		
+		// FIRE THE SEARCH
+		
+		long searchStartMillis = System.currentTimeMillis();
+		
+		List<EDirection> result = engine.search(board);
+
+		long searchTime = System.currentTimeMillis() - searchStartMillis;
+        
+        if (verbose) {
+            System.out.println("SEARCH TOOK:   " + searchTime + " ms");
+            System.out.println("NODES VISITED: " + engine.getSearchedNodes() + " in " + engine.getIterations() + " iterations");
+            System.out.println("PERFORMANCE:   " + ((double)engine.getSearchedNodes() / (double)searchTime * 1000) + " nodes/sec");
+            System.out.println("SOLUTION:      " + (result == null ? "NOT FOUND" : "FOUND in " + result.size() + " steps (" + engine.getThreshold() + " pushes)"));
+            System.out.println("=================");
+        }
+		
+		if (result == null || result.size() == 0) {
+            return null;
+		}
+				
+		return result;
+	}
+	
+	@Override
+	public void stop() {
+		engine.stop();
+		super.stop();
+	}
+	
+	protected void prepare(BoardCompact board) {
+		tables = LevelTables.forLevel(board);
+	}
+	
+	protected int heuristic(BoardCompact board) {
+		return tables.heuristic(board);
+	}
+
+}
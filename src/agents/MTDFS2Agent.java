@@ -1,9 +1,9 @@
 package agents;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import game.actions.EDirection;
@@ -15,53 +15,62 @@ import game.board.compact.BoardCompact;
 
 /**
  * Multi-threaded version of {@link DFS2Agent}
+ * <br/>
+ * The search runs in a {@link ForkJoinPool} as {@link DFS2Task}s: a task splits its subtree into one subtask per action only while the subtree
+ * is deep enough and its worker has few queued tasks; idle workers steal the queued subtasks, busy ones search sequentially.
+ * Once {@link #solutionFound} is set, all tasks return as soon as they notice it.
  * @author Jimmy
  */
 public class MTDFS2Agent extends ArtificialAgent {
 
+	/**
+	 * Subtrees shallower than this are never split.
+	 */
+	protected static final int MIN_SPLIT_LEVEL = 4;
+
+	/**
+	 * A task splits only while its worker has fewer surplus queued tasks than this (see {@link RecursiveTask#getSurplusQueuedTaskCount()}).
+	 */
+	protected static final int MAX_SURPLUS_TASKS = 2;
+
 	protected BoardCompact board;
 
+	/**
+	 * Parallelism == number of available processors; threads are created once and reused by all searches.
+	 */
+	protected ForkJoinPool pool = new ForkJoinPool();
+
 	protected Object solutionFoundMutex = new Object();
-	
+
 	/**
-	 * Here we will mark the fact that some {@link DFS2Thread} found a solution.
+	 * Here we will mark the fact that some {@link DFS2Task} found a solution; also set by {@link #stop()} to cancel the search.
 	 */
-	protected boolean solutionFound = false;
+	protected volatile boolean solutionFound = false;
 
 	/**
 	 * Profiling ... how many nodes we have managed to search.
 	 */
 	protected AtomicInteger searchedNodes = new AtomicInteger();
-	
+
 	@Override
 	protected List<EDirection> think(BoardCompact board) {
 		// INIT SEARCH
 		this.board = board;
 		this.solutionFound = false;
 		this.searchedNodes.set(0);
-		
+
 		// SEARCH CONFIGURATION
-		int spareThreads = 8;
 		int searchLevel = 37;
-		
+
 		// FIRE THE SEARCH
-				
+
 		long searchStartMillis = System.currentTimeMillis();
-		
-		DFS2Thread rootThread = new DFS2Thread(board, searchLevel, spareThreads-1, EDirection.NONE);
-		rootThread.start();
-		try {
-			rootThread.join();
-		} catch (InterruptedException e) {
-			throw new RuntimeException("Interrupted on rootThread.join()", e);
-		}
-		
-		List<EDirection> result;
-		if (rootThread.solutionFound) result = rootThread.result;
-		else result = new ArrayList<EDirection>();
-				
+
+		List<EDirection> result = pool.invoke(new DFS2Task(board.clone(), searchLevel, EDirection.NONE));
+		if (result == null) result = new ArrayList<EDirection>();
+
 		long searchTime = System.currentTimeMillis() - searchStartMillis;
-        
+
         if (verbose) {
             System.out.println("SEARCH TOOK:   " + searchTime + " ms");
             System.out.println("NODES VISITED: " + searchedNodes);
@@ -80,143 +89,102 @@ public class MTDFS2Agent extends ArtificialAgent {
 		if (result.size() == 0) {
             return null;
 		}
-				
+
 		return result;
 	}
 
-	public class DFS2Thread extends Thread {
-		
-		public List<EDirection> preActions = new ArrayList<EDirection>();
-		
-		public List<EDirection> result = new ArrayList<EDirection>();
-		
-		public BoardCompact board;
-		
-		public boolean solutionFound = false;
+	@Override
+	public void stop() {
+		// cancels the running tasks, none of them can claim the solution anymore
+		solutionFound = true;
+		super.stop();
+	}
 
-		private int level;
+	/**
+	 * Depth-limited DFS of the subtree of its own 'board'.
+	 * Returns the directions leading from its board to the solution, or null if there is none or a different task found one first.
+	 */
+	public class DFS2Task extends RecursiveTask<List<EDirection>> {
 
-		private int spareThreads;
+		private static final long serialVersionUID = 1L;
 
-		private EDirection previousMove;
-		
-		public DFS2Thread(BoardCompact board, int level, int spareThreads, EDirection previousAction) {
-			super("DFSThread");
+		private final BoardCompact board;
+
+		private final int level;
+
+		private final EDirection previousMove;
+
+		public DFS2Task(BoardCompact board, int level, EDirection previousMove) {
 			this.board = board;
 			this.level = level;
-			this.spareThreads = spareThreads;
-			this.previousMove = previousAction;
+			this.previousMove = previousMove;
 		}
-		
+
 		@Override
-		public void run() {
-			if (level <= 0) return; // DEPTH-LIMITED
-			if (MTDFS2Agent.this.solutionFound) return; // SOLUTION ALREADY FOUND IN DIFFERENT THREAD
-			
-			if (spareThreads == 0) {
-				// no more thread branching ...
-				dfs(level, previousMove);
-				return;
-			}
-			
+		protected List<EDirection> compute() {
+			if (level <= 0) return null; // DEPTH-LIMITED
+			if (MTDFS2Agent.this.solutionFound) return null; // SOLUTION ALREADY FOUND IN DIFFERENT TASK
+
+			List<EDirection> preActions = new ArrayList<EDirection>();
 			List<CAction> actions = new ArrayList<CAction>(4);
-			
+			int level = this.level;
+			EDirection previousMove = this.previousMove;
+
 			// cutoff "single action option"
 			while (true) {
-			
-				for (CPush push : CPush.getActions()) {
-					if (push.isPossible(board)) {
-						actions.add(push);
-					}
-				}
-				for (CMove move : CMove.getActions()) {
-					if (move.getDirection() == previousMove.opposite()) {
-						// DO NOT CONSIDER THE ACTION THE MOVES BACK
-						continue;
-					}
-					if (move.isPossible(board)) {
-						actions.add(move);
-					}
-				}
-			
-				if (actions.size() == 1) {
-					this.preActions.add(actions.get(0).getDirection());
+				actions.clear();
+				collectActions(actions, previousMove);
+
+				if (actions.size() == 1 && level > 0) {
+					preActions.add(actions.get(0).getDirection());
 					actions.get(0).perform(board);
+					previousMove = nextPreviousMove(actions.get(0));
+					--level;
+					if (board.isVictory()) return claimSolution() ? preActions : null;
 				} else {
 					break;
 				}
-				
 			}
-			
+
 			// WE HAVE MORE THAN 1 ACTION TO CHOOSE FROM ...
-			
-			Map<DFS2Thread, EDirection> threads = new HashMap<DFS2Thread, EDirection>();
-			
-			// LAUNCH SPARE THREADS, leave some action to be investigated by this thread
-			while (spareThreads > 0 && actions.size() > 1) {
-				EDirection dir = actions.get(0).getDirection();
-				BoardCompact threadBoard = board.clone();
-				actions.get(0).perform(threadBoard);
-				
-				int nextSpareThreads;
-				// DECIDE ON NUMBER OF THREADS GIVEN TO THE NEXT DFSThread TO USE
-				if      (actions.size() == 2) nextSpareThreads = spareThreads-1;
-				else if (spareThreads > 2)    nextSpareThreads = 1;
-				else                          nextSpareThreads = 0;
-				
-				DFS2Thread thread = new DFS2Thread(threadBoard, level-1, nextSpareThreads, dir);
-				
-				thread.start();
-				threads.put(thread, dir);
-				
-				// PREPARE NEXT ITERATION
-				spareThreads = spareThreads - 1 - nextSpareThreads;
-				actions.remove(0);
-			}
-			
-			// DFS THE REST OF ACTIONS
-			dfs(actions, level);
-			
-			if (solutionFound) {
-				// SOLUTION FOUND HERE...
+
+			if (level < MIN_SPLIT_LEVEL || actions.size() < 2 || getSurplusQueuedTaskCount() >= MAX_SURPLUS_TASKS) {
+				// SMALL SUBTREE OR ENOUGH QUEUED WORK => SEQUENTIAL DFS
+				List<EDirection> result = new ArrayList<EDirection>();
+				if (!dfs(actions, level, result)) return null;
 				preActions.addAll(result);
-				result = preActions;
-				return;
-			} else {
-				// JOIN ON THREADS
-				for (DFS2Thread thread : threads.keySet()) {
-					try {
-						thread.join();
-					} catch (Exception e) {
-						return;
-					}
+				return preActions;
+			}
+
+			// SPLIT, idle workers steal the subtasks
+			List<DFS2Task> tasks = new ArrayList<DFS2Task>(actions.size());
+			for (CAction action : actions) {
+				BoardCompact taskBoard = board.clone();
+				action.perform(taskBoard);
+				if (taskBoard.isVictory()) {
+					if (!claimSolution()) return null;
+					preActions.add(action.getDirection());
+					return preActions;
 				}
-				// EXAMINE RESULTS
-				for (DFS2Thread thread : threads.keySet()) {
-					if (thread.solutionFound) {
-						// SOLUTION FOUND BY THIS THREAD
-						// REWRITE ACTIONS ...
-						EDirection firstAction = threads.get(thread);
-						
-						result.clear();
-						result.addAll(preActions);
-						result.add(firstAction);
-						result.addAll(thread.result);
-						
-						solutionFound = true;
-					}
+				tasks.add(new DFS2Task(taskBoard, level-1, nextPreviousMove(action)));
+			}
+			MTDFS2Agent.this.searchedNodes.incrementAndGet();
+			invokeAll(tasks);
+
+			// EXAMINE RESULTS
+			for (int i = 0; i < tasks.size(); ++i) {
+				List<EDirection> result = tasks.get(i).join();
+				if (result != null) {
+					// SOLUTION FOUND BY THIS TASK
+					preActions.add(actions.get(i).getDirection());
+					preActions.addAll(result);
+					return preActions;
 				}
 			}
+			return null;
 		}
-		
-		private boolean dfs(int level, EDirection previousMove) {
-			if (level <= 0) return false; // DEPTH-LIMITED
-			if (MTDFS2Agent.this.solutionFound) {
-				return false; // SOLUTION ALREADY FOUND IN DIFFERENT THREAD
-			}
-			
-			List<CAction> actions = new ArrayList<CAction>(4);
-			
+
+		private void collectActions(List<CAction> actions, EDirection previousMove) {
 			for (CPush push : CPush.getActions()) {
 				if (push.isPossible(board)) {
 					actions.add(push);
@@ -231,64 +199,71 @@ public class MTDFS2Agent extends ArtificialAgent {
 					actions.add(move);
 				}
 			}
-						
-			return dfs(actions, level);
 		}
-		
-		private boolean dfs(List<CAction> actions, int level) {
+
+		private EDirection nextPreviousMove(CAction action) {
+			return action.getType() == EActionType.MOVE ? action.getDirection() : EDirection.NONE;
+		}
+
+		private boolean dfs(int level, EDirection previousMove, List<EDirection> result) {
+			if (level <= 0) return false; // DEPTH-LIMITED
+			if (MTDFS2Agent.this.solutionFound) {
+				return false; // SOLUTION ALREADY FOUND IN DIFFERENT TASK
+			}
+
+			List<CAction> actions = new ArrayList<CAction>(4);
+			collectActions(actions, previousMove);
+
+			return dfs(actions, level, result);
+		}
+
+		private boolean dfs(List<CAction> actions, int level, List<EDirection> result) {
 			if (level <= 0) return false; // DEPTH-LIMITED
-			
+
 			MTDFS2Agent.this.searchedNodes.incrementAndGet();
-			
+
 			// TRY ACTIONS
 			for (CAction action : actions) {
 				if (MTDFS2Agent.this.solutionFound) {
-					return false; // SOLUTION ALREADY FOUND IN DIFFERENT THREAD
+					return false; // SOLUTION ALREADY FOUND IN DIFFERENT TASK
 				}
-				
+
 				// PERFORM THE ACTION
 				result.add(action.getDirection());
 				action.perform(board);
-				
-				// DEBUG
-				//System.out.println("PERFORMED: " + action);
-				//board.debugPrint();
-				
+
 				// CHECK VICTORY
 				if (board.isVictory()) {
 					// SOLUTION FOUND!
-					solutionFound();					
-					return true;
+					return claimSolution();
 				}
-				
+
 				// CONTINUE THE SEARCH
-				if (dfs(level-1, (action.getType() == EActionType.MOVE ? action.getDirection() : EDirection.NONE))) {
+				if (dfs(level-1, nextPreviousMove(action), result)) {
 					// SOLUTION FOUND!
-					solutionFound();
 					return true;
 				}
-				
+
 				// REVESE ACTION
 				result.remove(result.size()-1);
 				action.reverse(board);
-				
-				// DEBUG
-				//System.out.println("REVERSED: " + action + " -> " + action.getDirection().opposite());
-				//board.debugPrint();
 			}
-			
+
 			return false;
 		}
 
-		private void solutionFound() {
+		/**
+		 * @return true if this task is the first one to find the solution
+		 */
+		private boolean claimSolution() {
 			synchronized(MTDFS2Agent.this.solutionFoundMutex) {
-				if (!MTDFS2Agent.this.solutionFound) {
-					MTDFS2Agent.this.solutionFound = true;
-					solutionFound = true;
-				}
+				if (MTDFS2Agent.this.solutionFound) return false;
+				MTDFS2Agent.this.solutionFound = true;
+				return true;
 			}
 		}
-		
+
 	}
 
+
 }
@@ -0,0 +1,365 @@
+package agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import agents.search.AStarEngine;
+import agents.search.AnytimeAStarEngine;
+import agents.search.BeamSearchEngine;
+import agents.search.BidirectionalEngine;
+import agents.search.HDAStarEngine;
+import agents.search.IDAStarEngine;
+import agents.search.ISolver;
+import agents.search.LevelTables;
+import game.actions.EDirection;
+import game.actions.compact.CAction;
+import game.actions.compact.CMove;
+import game.actions.compact.CPush;
+import game.board.compact.BoardCompact;
+
+/**
+ * Races several {@link ISolver}s on the same level, each on its own thread; the first valid plan wins and the other solvers are stopped.
+ * <br/>
+ * All solvers share the read-only {@link LevelTables} of the level, built once. Default portfolio: push-level A*, IDA*,
+ * push-level greedy (weighted heuristic), anytime weighted A* (returns its best plan a little before the level times out),
+ * bidirectional push/pull search and beam search (for levels too big for the others); pass your own to {@link #PortfolioAgent(ISolver...)}.
+ *
+ * @author Jimmy
+ */
+public class PortfolioAgent extends ArtificialAgent {
+
+	/**
+	 * Time left for playing the plan after the search, see {@link ISolver#deadline(long)}.
+	 */
+	protected static final long DEADLINE_MARGIN_MILLIS = 200;
+
+	protected final List<ISolver> solvers;
+
+	/**
+	 * One thread per solver, kept for all levels.
+	 */
+	protected final ExecutorService executor;
+
+	public PortfolioAgent() {
+		this(aStar(), idaStar(), greedy(5), anytime(), bidirectional(), beam());
+	}
+
+	public PortfolioAgent(ISolver... solvers) {
+		if (solvers.length == 0) throw new RuntimeException("PortfolioAgent needs at least one solver.");
+		this.solvers = new ArrayList<ISolver>(Arrays.asList(solvers));
+		this.executor = Executors.newFixedThreadPool(solvers.length, runnable -> {
+			Thread thread = new Thread(runnable, "PortfolioSolver");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	protected List<EDirection> think(BoardCompact board) {
+		// SHARED PREPROCESSING
+		LevelTables tables = LevelTables.forLevel(board);
+
+		long deadline = deadlineMillis == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineMillis - DEADLINE_MARGIN_MILLIS;
+
+		// FIRE ALL SOLVERS
+
+		long searchStartMillis = System.currentTimeMillis();
+
+		ExecutorCompletionService<List<EDirection>> completion = new ExecutorCompletionService<List<EDirection>>(executor);
+		List<Future<List<EDirection>>> futures = new ArrayList<Future<List<EDirection>>>(solvers.size());
+		for (ISolver solver : solvers) {
+			BoardCompact solverBoard = board.clone();
+			solver.deadline(deadline);
+			futures.add(completion.submit(() -> solver.solve(solverBoard, tables)));
+		}
+
+		// FIRST VALID PLAN WINS
+
+		List<EDirection> result = null;
+		ISolver winner = null;
+		try {
+			for (int i = 0; i < futures.size() && result == null; ++i) {
+				Future<List<EDirection>> done = completion.take();
+				ISolver solver = solvers.get(futures.indexOf(done));
+				try {
+					List<EDirection> plan = done.get();
+					if (plan != null && isValid(board, plan)) {
+						result = plan;
+						winner = solver;
+					}
+				} catch (ExecutionException e) {
+					if (verbose) System.out.println("SOLVER " + solver.getName() + " FAILED: " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stopSolvers(futures);
+		}
+
+		long searchTime = System.currentTimeMillis() - searchStartMillis;
+
+        if (verbose) {
+            System.out.println("SEARCH TOOK:   " + searchTime + " ms");
+            System.out.println("SOLUTION:      " + (result == null ? "NOT FOUND" : "FOUND in " + result.size() + " steps by " + winner.getName()));
+            System.out.println("=================");
+        }
+
+		if (result == null || result.size() == 0) {
+            return null;
+		}
+
+		return result;
+	}
+
+	@Override
+	public void stop() {
+		for (ISolver solver : solvers) {
+			solver.stop();
+		}
+		super.stop();
+	}
+
+	/**
+	 * Stops all solvers and waits for them to return, so they can be reused for the next level.
+	 * A solver that has not started its search yet would miss a single stop(), hence stop() is repeated while waiting.
+	 */
+	private void stopSolvers(List<Future<List<EDirection>>> futures) {
+		for (int i = 0; i < futures.size(); ++i) {
+			Future<List<EDirection>> future = futures.get(i);
+			while (!future.isDone()) {
+				solvers.get(i).stop();
+				try {
+					future.get(10, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException | ExecutionException e) {
+					// stopped or failed, either way the solver is no longer running once done
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replays the 'plan' on a copy of the 'board'.
+	 * @param board
+	 * @param plan
+	 * @return true if every step is possible and the level ends solved
+	 */
+	protected boolean isValid(BoardCompact board, List<EDirection> plan) {
+		BoardCompact replay = board.clone();
+		for (EDirection dir : plan) {
+			CAction action = CMove.getAction(dir);
+			if (!action.isPossible(replay)) action = CPush.getAction(dir);
+			if (!action.isPossible(replay)) return false;
+			action.perform(replay);
+		}
+		return replay.isVictory();
+	}
+
+	// ========
+	// SOLVERS
+	// ========
+
+	/**
+	 * Push-optimal A* over push-level nodes ({@link AStarEngine#setPushLevel(boolean)}) with PI-corral pruning, states kept off the heap.
+	 * @return
+	 */
+	public static ISolver aStar() {
+		return new ISolver() {
+			private final AStarEngine engine = new AStarEngine().setPushLevel(true).setCorralPruning(true).setOffHeapBytes(Runtime.getRuntime().maxMemory() / 8);
+
+			@Override
+			public String getName() {
+				return "A*";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Push-level weighted A* ({@link AStarEngine#setWeight(double)}, the heuristic counts 'weight' times); finds (non-optimal) plans fast.
+	 * @param weight
+	 * @return
+	 */
+	public static ISolver greedy(int weight) {
+		return new ISolver() {
+			private final AStarEngine engine = new AStarEngine().setPushLevel(true).setWeight(weight);
+
+			@Override
+			public String getName() {
+				return "Greedy(w=" + weight + ")";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Anytime weighted A* ({@link AnytimeAStarEngine}): improves its plan with decreasing weights and returns the best one
+	 * at the {@link ISolver#deadline(long)} or as soon as it is proven optimal.
+	 * @return
+	 */
+	public static ISolver anytime() {
+		return new ISolver() {
+			private final AnytimeAStarEngine engine = new AnytimeAStarEngine();
+
+			private volatile long deadlineMillis = Long.MAX_VALUE;
+
+			@Override
+			public String getName() {
+				return "Anytime A*";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.getEngine().setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board, deadlineMillis);
+			}
+
+			@Override
+			public void deadline(long deadlineMillis) {
+				this.deadlineMillis = deadlineMillis;
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Push-optimal IDA* ({@link IDAStarEngine}) with PI-corral pruning, memory stays flat.
+	 * @return
+	 */
+	public static ISolver idaStar() {
+		return new ISolver() {
+			private final IDAStarEngine engine = new IDAStarEngine().setCorralPruning(true);
+
+			@Override
+			public String getName() {
+				return "IDA*";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Forward push search meeting backward pull search ({@link BidirectionalEngine}).
+	 * @return
+	 */
+	public static ISolver bidirectional() {
+		return new ISolver() {
+			private final BidirectionalEngine engine = new BidirectionalEngine();
+
+			@Override
+			public String getName() {
+				return "Bidirectional";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Memory-bounded beam search ({@link BeamSearchEngine}) widening the beam after every failure.
+	 * @return
+	 */
+	public static ISolver beam() {
+		return new ISolver() {
+			private final BeamSearchEngine engine = new BeamSearchEngine();
+
+			@Override
+			public String getName() {
+				return "Beam";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+	/**
+	 * Hash-distributed parallel A* ({@link HDAStarEngine}) with 'threads' workers of its own.
+	 * @param threads
+	 * @return
+	 */
+	public static ISolver hdaStar(int threads) {
+		return new ISolver() {
+			private final HDAStarEngine engine = new HDAStarEngine().setThreads(threads);
+
+			@Override
+			public String getName() {
+				return "HDA*(" + threads + ")";
+			}
+
+			@Override
+			public List<EDirection> solve(BoardCompact board, LevelTables tables) {
+				engine.setHeuristic(tables::heuristic).setPruning(tables.deadlockPruning);
+				return engine.search(board);
+			}
+
+			@Override
+			public void stop() {
+				engine.stop();
+			}
+		};
+	}
+
+}
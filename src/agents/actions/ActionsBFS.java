@@ -26,6 +26,11 @@ public class ActionsBFS {
 		public final int x;
 		public final int y;
 		
+		/**
+		 * Index of [x;y] within {@link BoardCompact#tiles}.
+		 */
+		public final int cell;
+		
 		public final int level;
 		
 		public final int hashCode;
@@ -34,17 +39,19 @@ public class ActionsBFS {
 		
 		public Node parent;
 		
-		public Node(int x, int y, int level, EDirection move) {
+		public Node(int x, int y, int cell, int level, EDirection move) {
 			this.x = x;
-			this.y = y;		
+			this.y = y;
+			this.cell = cell;
 			this.level = level;
 			this.move = move;
 			hashCode = 290317 * x + 97 * y;
 		}
 		
-		public Node(int x, int y, Node parent, EDirection move) {
+		public Node(int x, int y, int cell, Node parent, EDirection move) {
 			this.x = x;
-			this.y = y;		
+			this.y = y;
+			this.cell = cell;
 			this.parent = parent;
 			this.level = parent.level + 1;
 			this.move = move;
@@ -97,7 +104,7 @@ public class ActionsBFS {
 			touched.clear();
 		}
 				
-		Node first = new Node(board.playerX, board.playerY, 0, null);
+		Node first = new Node(board.playerX, board.playerY, board.playerCell(), 0, null);
 		
 		// Variant A) include the first node into the result => generate "pushes" from the current player location as well
 		queue.enqueue(first);
@@ -122,16 +129,9 @@ public class ActionsBFS {
 	
 	private void expand(BoardCompact board, Node node) {
 		for (EDirection dir : EDirection.arrows()) {
-			if (CTile.isWalkable(board.tile(node.x+dir.dX, node.y+dir.dY))) {
-//				if (CTile.isWall(board.tile(node.x+dir.dX, node.y+dir.dY))) {
-//					System.out.println("???");
-//					CTile.isWalkable(board.tile(node.x+dir.dX, node.y+dir.dY));
-//				}
-//				if (CTile.isSomeBox(board.tile(node.x+dir.dX, node.y+dir.dY))) {
-//					System.out.println("???");
-//					CTile.isWalkable(board.tile(node.x+dir.dX, node.y+dir.dY));
-//				}
-				Node next = new Node(node.x+dir.dX, node.y+dir.dY, node, dir);
+			int nextCell = node.cell + board.dirOffset(dir);
+			if (CTile.isWalkable(board.tileAt(nextCell))) {
+				Node next = new Node(node.x+dir.dX, node.y+dir.dY, nextCell, node, dir);
 				if (touched.contains(next)) {
 					// already probed
 					continue;
@@ -173,15 +173,16 @@ public class ActionsBFS {
 
 	private static boolean isTarget(BoardCompact board, Node node) {
 		// moveable box around
-		return    isMovableBoxAt(board, node.x-1, node.y, EDirection.LEFT) 
-			   || isMovableBoxAt(board, node.x+1, node.y, EDirection.RIGHT) 
-			   || isMovableBoxAt(board, node.x, node.y-1, EDirection.UP) 
-			   || isMovableBoxAt(board, node.x, node.y+1, EDirection.DOWN);
+		return    isMovableBoxAt(board, node.cell, EDirection.LEFT) 
+			   || isMovableBoxAt(board, node.cell, EDirection.RIGHT) 
+			   || isMovableBoxAt(board, node.cell, EDirection.UP) 
+			   || isMovableBoxAt(board, node.cell, EDirection.DOWN);
 	}
 	
-	private static boolean isMovableBoxAt(BoardCompact board, int x, int y, EDirection moveDir) {
-		return    CTile.isSomeBox(board.tile(x, y))
-			   && CTile.isWalkable(board.tile(x+moveDir.dX, y+moveDir.dY))
+	private static boolean isMovableBoxAt(BoardCompact board, int playerCell, EDirection moveDir) {
+		int offset = board.dirOffset(moveDir);
+		return    CTile.isSomeBox(board.tileAt(playerCell + offset))
+			   && CTile.isWalkable(board.tileAt(playerCell + offset + offset))
 			   ;
 	}
 
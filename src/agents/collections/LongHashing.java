@@ -0,0 +1,52 @@
+package agents.collections;
+
+/**
+ * Shared sizing and hash mixing of the open-addressing long-keyed collections.
+ */
+class LongHashing {
+
+	/**
+	 * Largest power-of-two table a Java array can hold.
+	 */
+	static final int MAX_TABLE_SIZE = 1 << 30;
+
+	/**
+	 * Spreads the bits of 'key' so that the low bits (used for the slot) depend on the whole key;
+	 * state hashes are usually well mixed already, but plain counters or packed coordinates are not.
+	 * @param key
+	 * @return
+	 */
+	static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	static float checkLoadFactor(float loadFactor) {
+		if (!(loadFactor > 0 && loadFactor < 1)) throw new RuntimeException("Invalid loadFactor = " + loadFactor + ", must be within (0;1).");
+		return loadFactor;
+	}
+
+	/**
+	 * Power-of-two table size able to hold 'expectedSize' keys without exceeding 'loadFactor'.
+	 * @param expectedSize
+	 * @param loadFactor
+	 * @return
+	 */
+	static int tableSize(int expectedSize, float loadFactor) {
+		long needed = (long)Math.ceil(Math.max(expectedSize, 2) / (double)loadFactor);
+		if (needed > MAX_TABLE_SIZE) return MAX_TABLE_SIZE;
+		return Integer.highestOneBit((int)needed - 1) << 1;
+	}
+
+	/**
+	 * Number of keys the table of 'tableSize' may hold before it grows.
+	 * @param tableSize
+	 * @param loadFactor
+	 * @return
+	 */
+	static int maxSize(int tableSize, float loadFactor) {
+		if (tableSize == MAX_TABLE_SIZE) return tableSize - 1;
+		return Math.min(tableSize - 1, (int)(tableSize * loadFactor));
+	}
+
+}
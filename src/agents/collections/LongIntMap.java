@@ -0,0 +1,222 @@
+package agents.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive longs (e.g. {@link game.board.compact.BoardCompact#zobrist()} state hashes) to ints without boxing,
+ * e.g. a cost-so-far or depth map of a search.
+ * <br/>
+ * Open addressing with linear probing over a power-of-two table; doubles whenever {@link #size()} reaches the load factor.
+ * Key 0 is stored aside, so any long is a valid key.
+ * <br/>
+ * Not thread-safe.
+ */
+public class LongIntMap {
+
+	private final float loadFactor;
+
+	private long[] keys;
+
+	private int[] values;
+
+	private int mask;
+
+	private int size;
+
+	private int maxSize;
+
+	private boolean hasZero;
+
+	private int zeroValue;
+
+	public LongIntMap() {
+		this(LongSet.DEFAULT_CAPACITY, LongSet.DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongIntMap(int expectedSize) {
+		this(expectedSize, LongSet.DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * @param expectedSize number of keys the map will hold without resizing
+	 * @param loadFactor in (0;1), fraction of the table that may be filled before it grows
+	 */
+	public LongIntMap(int expectedSize, float loadFactor) {
+		this.loadFactor = LongHashing.checkLoadFactor(loadFactor);
+		allocate(LongHashing.tableSize(expectedSize, loadFactor));
+	}
+
+	private void allocate(int tableSize) {
+		keys = new long[tableSize];
+		values = new int[tableSize];
+		mask = tableSize - 1;
+		maxSize = LongHashing.maxSize(tableSize, loadFactor);
+	}
+
+	/**
+	 * Number of keys stored.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Slot of the 'key' or -1.
+	 * @param key (non-zero)
+	 * @return
+	 */
+	private int slotOf(long key) {
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0) return hasZero;
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * Value of the 'key' or 'missing' if the key is not present.
+	 * @param key
+	 * @param missing
+	 * @return
+	 */
+	public int get(long key, int missing) {
+		if (key == 0) return hasZero ? zeroValue : missing;
+		int slot = slotOf(key);
+		return slot < 0 ? missing : values[slot];
+	}
+
+	/**
+	 * Sets the value of the 'key'.
+	 * @param key
+	 * @param value
+	 * @return false if the key was already present (its value is overwritten)
+	 */
+	public boolean put(long key, int value) {
+		if (key == 0) {
+			zeroValue = value;
+			if (hasZero) return false;
+			hasZero = true;
+			++size;
+			return true;
+		}
+		if (size >= maxSize) grow();
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) {
+				values[slot] = value;
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		++size;
+		return true;
+	}
+
+	/**
+	 * Sets the value of the 'key' if the key is not present or its current value is greater than 'value';
+	 * the usual "found a cheaper path" update of cost maps, done with a single probe.
+	 * @param key
+	 * @param value
+	 * @return whether the value was set
+	 */
+	public boolean putIfLess(long key, int value) {
+		if (key == 0) {
+			if (hasZero && zeroValue <= value) return false;
+			if (!hasZero) ++size;
+			hasZero = true;
+			zeroValue = value;
+			return true;
+		}
+		if (size >= maxSize) grow();
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) {
+				if (values[slot] <= value) return false;
+				values[slot] = value;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		++size;
+		return true;
+	}
+
+	/**
+	 * Removes the 'key'; the probe chain is repaired by shifting subsequent keys back (no tombstones).
+	 * @param key
+	 * @return false if the key was not present
+	 */
+	public boolean remove(long key) {
+		if (key == 0) {
+			if (!hasZero) return false;
+			hasZero = false;
+			--size;
+			return true;
+		}
+		int slot = slotOf(key);
+		if (slot < 0) return false;
+		shiftKeys(slot);
+		--size;
+		return true;
+	}
+
+	private void shiftKeys(int free) {
+		int slot = free;
+		while (true) {
+			slot = (slot + 1) & mask;
+			long key = keys[slot];
+			if (key == 0) break;
+			int home = LongHashing.mix(key) & mask;
+			// can 'key' move into 'free', i.e., is 'free' cyclically within [home; slot)?
+			if (((slot - home) & mask) >= ((slot - free) & mask)) {
+				keys[free] = key;
+				values[free] = values[slot];
+				free = slot;
+			}
+		}
+		keys[free] = 0;
+	}
+
+	private void grow() {
+		if (keys.length == LongHashing.MAX_TABLE_SIZE) throw new RuntimeException("LongIntMap is full, size = " + size + ".");
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(keys.length << 1);
+		for (int i = 0; i < oldKeys.length; ++i) {
+			long key = oldKeys[i];
+			if (key == 0) continue;
+			int slot = LongHashing.mix(key) & mask;
+			while (keys[slot] != 0) slot = (slot + 1) & mask;
+			keys[slot] = key;
+			values[slot] = oldValues[i];
+		}
+	}
+
+	/**
+	 * Removes all keys; keeps the table allocated.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		hasZero = false;
+		size = 0;
+	}
+
+}
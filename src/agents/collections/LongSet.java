@@ -0,0 +1,163 @@
+package agents.collections;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs (e.g. {@link game.board.compact.BoardCompact#zobrist()} state hashes) without boxing.
+ * <br/>
+ * Open addressing with linear probing over a power-of-two table; doubles whenever {@link #size()} reaches the load factor.
+ * Key 0 is stored aside, so any long is a valid key.
+ * <br/>
+ * Not thread-safe.
+ */
+public class LongSet {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	private final float loadFactor;
+
+	private long[] keys;
+
+	private int mask;
+
+	private int size;
+
+	private int maxSize;
+
+	private boolean hasZero;
+
+	public LongSet() {
+		this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public LongSet(int expectedSize) {
+		this(expectedSize, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * @param expectedSize number of keys the set will hold without resizing
+	 * @param loadFactor in (0;1), fraction of the table that may be filled before it grows
+	 */
+	public LongSet(int expectedSize, float loadFactor) {
+		this.loadFactor = LongHashing.checkLoadFactor(loadFactor);
+		allocate(LongHashing.tableSize(expectedSize, loadFactor));
+	}
+
+	private void allocate(int tableSize) {
+		keys = new long[tableSize];
+		mask = tableSize - 1;
+		maxSize = LongHashing.maxSize(tableSize, loadFactor);
+	}
+
+	/**
+	 * Number of keys stored.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(long key) {
+		if (key == 0) return hasZero;
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the 'key'.
+	 * @param key
+	 * @return false if the key was already present
+	 */
+	public boolean add(long key) {
+		if (key == 0) {
+			if (hasZero) return false;
+			hasZero = true;
+			++size;
+			return true;
+		}
+		if (size >= maxSize) grow();
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) return false;
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		++size;
+		return true;
+	}
+
+	/**
+	 * Removes the 'key'; the probe chain is repaired by shifting subsequent keys back (no tombstones).
+	 * @param key
+	 * @return false if the key was not present
+	 */
+	public boolean remove(long key) {
+		if (key == 0) {
+			if (!hasZero) return false;
+			hasZero = false;
+			--size;
+			return true;
+		}
+		int slot = LongHashing.mix(key) & mask;
+		long slotKey;
+		while ((slotKey = keys[slot]) != 0) {
+			if (slotKey == key) {
+				shiftKeys(slot);
+				--size;
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	private void shiftKeys(int free) {
+		int slot = free;
+		while (true) {
+			slot = (slot + 1) & mask;
+			long key = keys[slot];
+			if (key == 0) break;
+			int home = LongHashing.mix(key) & mask;
+			// can 'key' move into 'free', i.e., is 'free' cyclically within [home; slot)?
+			if (((slot - home) & mask) >= ((slot - free) & mask)) {
+				keys[free] = key;
+				free = slot;
+			}
+		}
+		keys[free] = 0;
+	}
+
+	private void grow() {
+		if (keys.length == LongHashing.MAX_TABLE_SIZE) throw new RuntimeException("LongSet is full, size = " + size + ".");
+		long[] oldKeys = keys;
+		allocate(keys.length << 1);
+		for (long key : oldKeys) {
+			if (key == 0) continue;
+			int slot = LongHashing.mix(key) & mask;
+			while (keys[slot] != 0) slot = (slot + 1) & mask;
+			keys[slot] = key;
+		}
+	}
+
+	/**
+	 * Removes all keys; keeps the table allocated.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		hasZero = false;
+		size = 0;
+	}
+
+}
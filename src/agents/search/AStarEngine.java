@@ -0,0 +1,592 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import game.actions.EDirection;
+import game.actions.compact.CAction;
+import game.actions.compact.CPush;
+import game.actions.compact.CWalkPush;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+
+/**
+ * Reusable A* over {@link BoardCompact} states; call {@link #search(BoardCompact)} from {@link agents.ArtificialAgent#think(BoardCompact)}.
+ * <br/>
+ * Every node is stored once, in parallel primitive arrays indexed by the node number: packed key and its hash (see {@link StateStore},
+ * which also finds duplicates), g, h, parent node and action code. No objects are created per node; there is a single working board, successors are performed on it
+ * in place ({@link BoardCompact#mark()} / {@link BoardCompact#undo()}) and a node is re-created on it from its key when expanded.
+ * <br/>
+ * The search is configured by {@link IHeuristic}, {@link ISuccessors} and {@link IPruning}; the cost of an action is {@link CAction#getSteps()}.
+ * The open list is a {@link BucketQueue}, so f-values must stay non-negative integers.
+ * <br/>
+ * {@link #setPushLevel(boolean)} switches to push-level nodes: the player is stored as its region ({@link PlayerRegion#minIndex()}),
+ * successors are all pushes the player can walk to (the {@link ISuccessors} are not used) and every push costs 1. Nodes keep
+ * {@link PushPlan} codes only; walks are computed for the final plan by {@link PushPlan#toDirections(BoardCompact, CellIndex, int[], int)}.
+ * <br/>
+ * {@link #setWeight(double)}, {@link #setCostBound(int)} and {@link #setDeadline(long)} turn it into a building block of anytime searches,
+ * see {@link AnytimeAStarEngine}.
+ * <br/>
+ * The engine may be reused for many searches (arrays are kept). Cannot be used with multicolored boxes. Not thread-safe, except for {@link #stop()}.
+ */
+public class AStarEngine {
+
+	/**
+	 * Parent of the root node; also "not found".
+	 */
+	public static final int NONE = -1;
+
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	private IHeuristic heuristic = IHeuristic.ZERO;
+
+	private ISuccessors successors = ISuccessors.MOVES_AND_PUSHES;
+
+	private IPruning pruning = null;
+
+	private int maxNodes = Integer.MAX_VALUE;
+
+	private boolean pushLevel = false;
+
+	private boolean corralPruning = false;
+
+	/**
+	 * f = g + weight * h.
+	 */
+	private double weight = 1;
+
+	/**
+	 * Nodes with g + h >= costBound are not stored.
+	 */
+	private int costBound = Integer.MAX_VALUE;
+
+	/**
+	 * System.currentTimeMillis() the search gives up at.
+	 */
+	private long deadlineMillis = Long.MAX_VALUE;
+
+	private volatile boolean stopRequested = false;
+
+	/**
+	 * Whether the last search found the goal or searched the whole space (within the cost bound).
+	 */
+	private boolean complete;
+
+	// ======
+	// LEVEL
+	// ======
+
+	private BoardCompact board;
+
+	/**
+	 * Unaltered copy of the searched board, the plan starts here.
+	 */
+	private BoardCompact startBoard;
+
+	private CellIndex cells;
+
+	/**
+	 * Used in the push-level mode only.
+	 */
+	private PlayerRegion region;
+
+	/**
+	 * Push-level mode with {@link #setCorralPruning(boolean)} only, otherwise null.
+	 */
+	private CorralAnalyzer corrals;
+
+	// ======
+	// NODES
+	// ======
+
+	/**
+	 * Node n == state n of the store.
+	 */
+	private StateStore states;
+
+	private int[] g;
+
+	private int[] h;
+
+	private int[] parent;
+
+	private int[] action;
+
+	private boolean[] closed;
+
+	private BucketQueue open = new BucketQueue(BucketQueue.ETieBreak.LOWEST_H);
+
+	/**
+	 * Action code == position within this list.
+	 */
+	private List<CAction> actionList = new ArrayList<CAction>();
+
+	private Map<CAction, Integer> actionCodes = new IdentityHashMap<CAction, Integer>();
+
+	// =======
+	// SCRATCH
+	// =======
+
+	private List<CAction> scratchActions = new ArrayList<CAction>(16);
+
+	private int[] scratchPushes = new int[64];
+
+	// =====
+	// STATS
+	// =====
+
+	private int expandedNodes;
+
+	private int generatedNodes;
+
+	public AStarEngine() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity number of nodes to preallocate arrays for; arrays grow as needed
+	 */
+	public AStarEngine(int initialCapacity) {
+		allocate(Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1);
+	}
+
+	// =============
+	// CONFIGURATION
+	// =============
+
+	public AStarEngine setHeuristic(IHeuristic heuristic) {
+		this.heuristic = heuristic == null ? IHeuristic.ZERO : heuristic;
+		return this;
+	}
+
+	public AStarEngine setSuccessors(ISuccessors successors) {
+		if (successors == null) throw new RuntimeException("successors cannot be null");
+		this.successors = successors;
+		return this;
+	}
+
+	/**
+	 * Order of nodes with the same f; default {@link BucketQueue.ETieBreak#LOWEST_H}.
+	 * @param tieBreak
+	 * @return
+	 */
+	public AStarEngine setTieBreak(BucketQueue.ETieBreak tieBreak) {
+		if (open.getTieBreak() != tieBreak) open = new BucketQueue(tieBreak);
+		return this;
+	}
+
+	/**
+	 * Checked on the start state ({@link IPruning#prune(BoardCompact)}) and on every push ({@link IPruning#prunePush(BoardCompact, int)}); moves are never pruned.
+	 * @param pruning null == do not prune
+	 * @return
+	 */
+	public AStarEngine setPruning(IPruning pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * Push-level (true) or step-level (false, default) nodes, see {@link AStarEngine}.
+	 * With push-level nodes the heuristic should estimate pushes.
+	 * @param pushLevel
+	 * @return
+	 */
+	public AStarEngine setPushLevel(boolean pushLevel) {
+		this.pushLevel = pushLevel;
+		return this;
+	}
+
+	/**
+	 * Push-level mode only: searches just the pushes into a PI-corral if there is one and drops corral deadlocks, see {@link CorralAnalyzer}.
+	 * Keeps the search complete and push-optimal. Default false.
+	 * @param corralPruning
+	 * @return
+	 */
+	public AStarEngine setCorralPruning(boolean corralPruning) {
+		this.corralPruning = corralPruning;
+		return this;
+	}
+
+	/**
+	 * Nodes are ordered by f = g + weight * h; weight > 1 finds plans faster, at most 'weight' times more expensive than the optimal one
+	 * (for an admissible heuristic). Default 1 == A*.
+	 * @param weight at least 1
+	 * @return
+	 */
+	public AStarEngine setWeight(double weight) {
+		if (weight < 1) throw new RuntimeException("weight must be at least 1, got " + weight + ".");
+		this.weight = weight;
+		return this;
+	}
+
+	/**
+	 * Nodes with g + h >= 'costBound' are not stored, i.e., only plans cheaper than 'costBound' are searched for
+	 * (nothing better is lost with an admissible heuristic). Default Integer.MAX_VALUE == no bound.
+	 * @param costBound
+	 * @return
+	 */
+	public AStarEngine setCostBound(int costBound) {
+		this.costBound = costBound;
+		return this;
+	}
+
+	/**
+	 * The search gives up (returns null) at this System.currentTimeMillis(); default Long.MAX_VALUE == never.
+	 * @param deadlineMillis
+	 * @return
+	 */
+	public AStarEngine setDeadline(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+		return this;
+	}
+
+	/**
+	 * The search gives up (returns null) once it stores this many nodes.
+	 * @param maxNodes
+	 * @return
+	 */
+	public AStarEngine setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+		return this;
+	}
+
+	/**
+	 * Keeps the packed states of the nodes (the bulk of their memory) in a {@link StateTable} of 'bytes' outside the Java heap,
+	 * so big searches neither run out of heap nor slow the garbage collector down; the search gives up once the table is full.
+	 * Takes effect from the next search.
+	 * @param bytes 0 == keep them on the heap (default)
+	 * @return
+	 */
+	public AStarEngine setOffHeapBytes(long bytes) {
+		states.setOffHeap(bytes);
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact)} return null as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	// ======
+	// SEARCH
+	// ======
+
+	/**
+	 * Finds the cheapest solution of the 'start' board (optimal if the heuristic is admissible).
+	 * @param start not altered
+	 * @return directions of the solution or null if there is none (within the limits)
+	 */
+	public List<EDirection> search(BoardCompact start) {
+		int goal = searchNode(start);
+		return goal == NONE ? null : extractPath(goal);
+	}
+
+	/**
+	 * Same as {@link #search(BoardCompact)}, returns the goal node (or {@link #NONE}); use {@link #extractPath(int)}, {@link #getG(int)}, ...
+	 * @param start
+	 * @return
+	 */
+	public int searchNode(BoardCompact start) {
+		reset(start);
+
+		int rootH = heuristic.estimate(board);
+		long rootHash = pushLevel ? states.encode(board, region) : states.encode(board, cells.indexOf(board.playerX, board.playerY));
+		if (rootH < costBound && (pruning == null || !pruning.prune(board))) {
+			int root = addNode(rootHash, 0, rootH, NONE, NONE);
+			open.push(root, priority(0, rootH), rootH);
+		}
+
+		while (!open.isEmpty()) {
+			if (stopRequested || states.size() >= maxNodes || states.isFull()) return NONE;
+			if ((expandedNodes & 1023) == 0 && deadlineMillis != Long.MAX_VALUE && System.currentTimeMillis() >= deadlineMillis) return NONE;
+
+			int node = open.poll();
+			if (closed[node]) continue; // stale entry
+			closed[node] = true;
+
+			states.load(board, node);
+			if (board.isVictory()) {
+				complete = true;
+				return node;
+			}
+
+			++expandedNodes;
+			if (pushLevel) expandPushes(node);
+			else expand(node);
+		}
+
+		complete = true;
+		return NONE;
+	}
+
+	/**
+	 * Cell the box pushed by 'action' ends at, computed on the {@link #board} before the action; {@link #NONE} if it is not a push.
+	 */
+	private int pushedBoxTarget(CAction action) {
+		if (action instanceof CPush) return ((CPush)action).getBoxTarget(board);
+		if (action instanceof CWalkPush) return ((CWalkPush)action).getBoxTarget(board);
+		return NONE;
+	}
+
+	private void expand(int node) {
+		scratchActions.clear();
+		successors.collect(board, scratchActions);
+
+		int nodeG = g[node];
+
+		for (int i = 0; i < scratchActions.size(); ++i) {
+			CAction act = scratchActions.get(i);
+
+			int boxCell = pushedBoxTarget(act);
+			board.mark();
+			act.perform(board);
+
+			// moves leave the boxes as they were in the (checked) parent
+			if (pruning != null && boxCell != NONE && pruning.prunePush(board, boxCell)) {
+				board.undo();
+				continue;
+			}
+			++generatedNodes;
+
+			int newG = nodeG + Math.max(1, act.getSteps());
+
+			relax(node, states.encode(board, cells.indexOf(board.playerX, board.playerY)), newG, actionCode(act));
+
+			board.undo();
+		}
+	}
+
+	private void expandPushes(int node) {
+		// COLLECT FIRST, region is recomputed for every successor
+		region.compute(board);
+		if (corrals != null && !corrals.analyze(board, region)) return; // corral deadlock
+		int count = 0;
+		int[] boardEntities = states.boardEntities();
+		for (int i = 1; i < boardEntities.length; ++i) {
+			int box = cells.indexOfCell(boardEntities[i]);
+			for (EDirection dir : EDirection.arrows()) {
+				int code = PushPlan.code(box, dir);
+				if (!PushPlan.isPossible(board, region, code)) continue;
+				if (corrals != null && !corrals.isPushAllowed(code)) continue;
+				if (count == scratchPushes.length) scratchPushes = Arrays.copyOf(scratchPushes, count * 2);
+				scratchPushes[count++] = code;
+			}
+		}
+
+		int newG = g[node] + 1;
+
+		for (int i = 0; i < count; ++i) {
+			int code = scratchPushes[i];
+
+			board.mark();
+			PushPlan.perform(board, cells, code);
+
+			if (pruning != null && pruning.prunePush(board, PushPlan.boxTarget(cells, code))) {
+				board.undo();
+				continue;
+			}
+			++generatedNodes;
+
+			relax(node, states.encode(board, region), newG, code);
+
+			board.undo();
+		}
+	}
+
+	/**
+	 * Adds the successor of 'node' (on the {@link #board}, its key encoded in the {@link #states}) or lowers its g.
+	 */
+	private void relax(int node, long hash, int newG, int actionCode) {
+		int other = states.find(hash);
+
+		if (other == NONE) {
+			if (states.isFull()) return; // the main loop gives up
+			int newH = heuristic.estimate(board);
+			if (newG + newH >= costBound) return;
+			int child = addNode(hash, newG, newH, node, actionCode);
+			open.push(child, priority(newG, newH), newH);
+		} else
+		if (newG < g[other]) {
+			if (newG + h[other] >= costBound) return;
+			g[other] = newG;
+			parent[other] = node;
+			action[other] = actionCode;
+			closed[other] = false;
+			open.push(other, priority(newG, h[other]), h[other]);
+		}
+	}
+
+	private int priority(int nodeG, int nodeH) {
+		return weight == 1 ? nodeG + nodeH : nodeG + (int)Math.ceil(weight * nodeH);
+	}
+
+	private void reset(BoardCompact start) {
+		board = start.clone();
+		startBoard = start.clone();
+		states.reset(board);
+		cells = states.cells;
+		region = pushLevel ? new PlayerRegion(cells) : null;
+		corrals = pushLevel && corralPruning ? new CorralAnalyzer(board, cells) : null;
+
+		open.clear();
+		actionList.clear();
+		actionCodes.clear();
+		expandedNodes = 0;
+		generatedNodes = 0;
+		stopRequested = false;
+		complete = false;
+	}
+
+	// =====
+	// NODES
+	// =====
+
+	/**
+	 * @param capacity power of two
+	 */
+	private void allocate(int capacity) {
+		states = new StateStore(capacity);
+		g = new int[capacity];
+		h = new int[capacity];
+		parent = new int[capacity];
+		action = new int[capacity];
+		closed = new boolean[capacity];
+	}
+
+	private int addNode(long hash, int nodeG, int nodeH, int parentNode, int actionCode) {
+		int node = states.add(hash);
+		if (node == g.length) {
+			int capacity = states.capacity();
+			g = Arrays.copyOf(g, capacity);
+			h = Arrays.copyOf(h, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			action = Arrays.copyOf(action, capacity);
+			closed = Arrays.copyOf(closed, capacity);
+		}
+		g[node] = nodeG;
+		h[node] = nodeH;
+		parent[node] = parentNode;
+		action[node] = actionCode;
+		closed[node] = false;
+		return node;
+	}
+
+	private int actionCode(CAction act) {
+		Integer code = actionCodes.get(act);
+		if (code == null) {
+			code = actionList.size();
+			actionList.add(act);
+			actionCodes.put(act, code);
+		}
+		return code;
+	}
+
+	// =======
+	// RESULTS
+	// =======
+
+	/**
+	 * Directions leading from the root to the 'node'.
+	 * @param node
+	 * @return
+	 */
+	public List<EDirection> extractPath(int node) {
+		if (pushLevel) {
+			int count = 0;
+			for (int n = node; parent[n] != NONE; n = parent[n]) ++count;
+			int[] codes = new int[count];
+			for (int n = node; parent[n] != NONE; n = parent[n]) codes[--count] = action[n];
+			return PushPlan.toDirections(startBoard, cells, codes, codes.length);
+		}
+		List<EDirection> result = new ArrayList<EDirection>();
+		while (parent[node] != NONE) {
+			EDirection[] dirs = actionList.get(action[node]).getDirections();
+			for (int i = dirs.length - 1; i >= 0; --i) {
+				result.add(dirs[i]);
+			}
+			node = parent[node];
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	public int getG(int node) {
+		return g[node];
+	}
+
+	public int getH(int node) {
+		return h[node];
+	}
+
+	public int getParent(int node) {
+		return parent[node];
+	}
+
+	/**
+	 * Action that led to the 'node' or null for the root; step-level mode only, see {@link #getPushCode(int)}.
+	 * @param node
+	 * @return
+	 */
+	public CAction getAction(int node) {
+		if (pushLevel) throw new RuntimeException("Push-level nodes have no CAction, use getPushCode().");
+		return action[node] == NONE ? null : actionList.get(action[node]);
+	}
+
+	/**
+	 * {@link PushPlan} code of the push that led to the 'node' or {@link #NONE} for the root; push-level mode only.
+	 * @param node
+	 * @return
+	 */
+	public int getPushCode(int node) {
+		if (!pushLevel) throw new RuntimeException("Step-level nodes have no push code, use getAction().");
+		return action[node];
+	}
+
+	/**
+	 * Whether the last search found the goal or proved there is none (within the cost bound); false if it was stopped or ran out of limits.
+	 * @return
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Number of nodes stored by the last search.
+	 * @return
+	 */
+	public int getNodeCount() {
+		return states.size();
+	}
+
+	/**
+	 * Number of nodes expanded by the last search.
+	 * @return
+	 */
+	public int getExpandedNodes() {
+		return expandedNodes;
+	}
+
+	/**
+	 * Number of successors that passed the pruning in the last search.
+	 * @return
+	 */
+	public int getGeneratedNodes() {
+		return generatedNodes;
+	}
+
+	/**
+	 * Corral statistics of the last search; null unless it ran in the push-level mode with {@link #setCorralPruning(boolean)}.
+	 * @return
+	 */
+	public CorralAnalyzer getCorralAnalyzer() {
+		return corrals;
+	}
+
+}
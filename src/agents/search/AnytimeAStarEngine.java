@@ -0,0 +1,137 @@
+package agents.search;
+
+import java.util.List;
+
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+
+/**
+ * Anytime weighted A* (restarting): runs {@link AStarEngine} with decreasing weights ({@link AStarEngine#setWeight(double)}); the first,
+ * greedy searches find a plan quickly, every next one searches only for plans cheaper than the best so far ({@link AStarEngine#setCostBound(int)}).
+ * <br/>
+ * At the deadline the best plan found so far is returned. If a search completes with weight 1, or proves that nothing cheaper exists,
+ * the plan is optimal (given an admissible heuristic) and the search ends early.
+ * <br/>
+ * Costs are those of the underlying engine: pushes in the push-level mode (default), steps otherwise.
+ * Not thread-safe, except for {@link #stop()}.
+ */
+public class AnytimeAStarEngine {
+
+	public static final double[] DEFAULT_WEIGHTS = { 5, 3, 2, 1.5, 1.25, 1 };
+
+	private final AStarEngine engine;
+
+	private double[] weights = DEFAULT_WEIGHTS;
+
+	private volatile boolean stopRequested = false;
+
+	// =====
+	// STATS
+	// =====
+
+	private int bestCost;
+
+	private boolean optimal;
+
+	private int iterations;
+
+	public AnytimeAStarEngine() {
+		this(new AStarEngine().setPushLevel(true));
+	}
+
+	/**
+	 * @param engine configured engine to use (heuristic, pruning, mode); weight, cost bound and deadline are set by this engine
+	 */
+	public AnytimeAStarEngine(AStarEngine engine) {
+		this.engine = engine;
+	}
+
+	public AStarEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Weights of the successive searches; decreasing, the last one should be 1.
+	 * @param weights
+	 * @return
+	 */
+	public AnytimeAStarEngine setWeights(double... weights) {
+		if (weights.length == 0) throw new RuntimeException("At least one weight is needed.");
+		this.weights = weights.clone();
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact, long)} return the best plan so far as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+		engine.stop();
+	}
+
+	/**
+	 * Improves the plan for the 'start' board until the 'deadlineMillis' (System.currentTimeMillis()) or until it is optimal.
+	 * @param start not altered
+	 * @param deadlineMillis Long.MAX_VALUE == no deadline
+	 * @return the best plan found or null if none was found in time
+	 */
+	public List<EDirection> search(BoardCompact start, long deadlineMillis) {
+		stopRequested = false;
+		bestCost = Integer.MAX_VALUE;
+		optimal = false;
+		iterations = 0;
+
+		List<EDirection> best = null;
+		engine.setDeadline(deadlineMillis);
+
+		for (double weight : weights) {
+			if (stopRequested || System.currentTimeMillis() >= deadlineMillis) break;
+
+			++iterations;
+			engine.setWeight(weight).setCostBound(bestCost);
+			int goal = engine.searchNode(start);
+
+			if (goal != AStarEngine.NONE) {
+				best = engine.extractPath(goal);
+				bestCost = engine.getG(goal);
+				if (weight == 1) {
+					optimal = true;
+					break;
+				}
+			} else
+			if (engine.isComplete()) {
+				// nothing cheaper than bestCost exists (or nothing at all)
+				optimal = best != null;
+				break;
+			}
+		}
+
+		engine.setWeight(1).setCostBound(Integer.MAX_VALUE).setDeadline(Long.MAX_VALUE);
+		return best;
+	}
+
+	/**
+	 * Cost of the plan returned by the last search (pushes or steps, see {@link AStarEngine#setPushLevel(boolean)}), Integer.MAX_VALUE if none.
+	 * @return
+	 */
+	public int getBestCost() {
+		return bestCost;
+	}
+
+	/**
+	 * Whether the plan returned by the last search is proven optimal.
+	 * @return
+	 */
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	/**
+	 * Number of weighted searches done by the last search.
+	 * @return
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+}
@@ -0,0 +1,404 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import agents.collections.LongIntMap;
+import game.actions.EDirection;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+
+/**
+ * Beam search over push-level states (box configuration + player region, see {@link AStarEngine#setPushLevel(boolean)}) for levels
+ * whose frontier does not fit into memory: every depth (number of pushes) keeps only the 'beamWidth' successors with the lowest {@link IHeuristic}.
+ * <br/>
+ * Kept states go into a {@link StateStore}, so a state is never kept twice, neither within a layer nor across layers. Memory is therefore
+ * bounded by beamWidth * depth stored states plus one layer of candidates; nothing else grows with the search.
+ * <br/>
+ * Beam search is incomplete: if the beam dies out, the search restarts with the width multiplied by {@link #setWidthGrowth(int)},
+ * up to {@link #setMaxBeamWidth(int)}. A beam that never had to drop a candidate searched the whole space, then there is no solution.
+ * Plans are not optimal. Cannot be used with multicolored boxes. Not thread-safe, except for {@link #stop()}.
+ */
+public class BeamSearchEngine {
+
+	public static final int NONE = -1;
+
+	public static final int DEFAULT_BEAM_WIDTH = 1024;
+
+	public static final int DEFAULT_MAX_BEAM_WIDTH = 1 << 18;
+
+	/**
+	 * Result of an attempt that died out without dropping any candidate.
+	 */
+	private static final int EXHAUSTED = -2;
+
+	private IHeuristic heuristic = IHeuristic.ZERO;
+
+	private IPruning pruning = null;
+
+	private int beamWidth = DEFAULT_BEAM_WIDTH;
+
+	private int maxBeamWidth = DEFAULT_MAX_BEAM_WIDTH;
+
+	private int widthGrowth = 4;
+
+	private volatile boolean stopRequested = false;
+
+	// =====
+	// LEVEL
+	// =====
+
+	private BoardCompact board;
+
+	private BoardCompact startBoard;
+
+	private CellIndex cells;
+
+	private PlayerRegion region;
+
+	// ======
+	// STATES
+	// ======
+
+	private StateStore states = new StateStore(1 << 12);
+
+	private int[] parent = new int[1 << 12];
+
+	private int[] code = new int[1 << 12];
+
+	/**
+	 * States of the current layer, [0; layerSize).
+	 */
+	private int[] layer = new int[64];
+
+	private int layerSize;
+
+	// ==========
+	// CANDIDATES
+	// ==========
+
+	/**
+	 * Successors of the current layer not stored yet; keys laid out as in {@link StateStore#keys}.
+	 */
+	private long[] candidateKeys = new long[64];
+
+	private long[] candidateHashes = new long[64];
+
+	private int[] candidateH = new int[64];
+
+	private int[] candidateParent = new int[64];
+
+	private int[] candidateCode = new int[64];
+
+	private int candidateCount;
+
+	/**
+	 * hash -> candidate; dedupes candidates within the layer.
+	 */
+	private LongIntMap candidateIndex = new LongIntMap();
+
+	/**
+	 * (h << 32 | candidate) for choosing the best ones.
+	 */
+	private long[] ranking = new long[64];
+
+	private int[] scratchPushes = new int[64];
+
+	// =====
+	// STATS
+	// =====
+
+	private int lastBeamWidth;
+
+	private int depth;
+
+	private int restarts;
+
+	public BeamSearchEngine() {
+	}
+
+	// =============
+	// CONFIGURATION
+	// =============
+
+	/**
+	 * Ranks the successors; lower == better.
+	 * @param heuristic
+	 * @return
+	 */
+	public BeamSearchEngine setHeuristic(IHeuristic heuristic) {
+		this.heuristic = heuristic == null ? IHeuristic.ZERO : heuristic;
+		return this;
+	}
+
+	/**
+	 * @param pruning null == do not prune
+	 * @return
+	 */
+	public BeamSearchEngine setPruning(IPruning pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * States kept per depth in the first attempt.
+	 * @param beamWidth
+	 * @return
+	 */
+	public BeamSearchEngine setBeamWidth(int beamWidth) {
+		if (beamWidth < 1) throw new RuntimeException("beamWidth must be at least 1, got " + beamWidth + ".");
+		this.beamWidth = beamWidth;
+		return this;
+	}
+
+	/**
+	 * No attempt uses a wider beam.
+	 * @param maxBeamWidth
+	 * @return
+	 */
+	public BeamSearchEngine setMaxBeamWidth(int maxBeamWidth) {
+		this.maxBeamWidth = maxBeamWidth;
+		return this;
+	}
+
+	/**
+	 * Factor the width grows by after a failed attempt.
+	 * @param widthGrowth at least 2
+	 * @return
+	 */
+	public BeamSearchEngine setWidthGrowth(int widthGrowth) {
+		if (widthGrowth < 2) throw new RuntimeException("widthGrowth must be at least 2, got " + widthGrowth + ".");
+		this.widthGrowth = widthGrowth;
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact)} return null as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	// ======
+	// SEARCH
+	// ======
+
+	/**
+	 * Finds a solution of the 'start' board, widening the beam until it succeeds or reaches {@link #setMaxBeamWidth(int)}.
+	 * @param start not altered
+	 * @return directions of the solution (walks included) or null if there is none (within the limits) or the search was stopped
+	 */
+	public List<EDirection> search(BoardCompact start) {
+		stopRequested = false;
+		restarts = 0;
+		startBoard = start.clone();
+		if (startBoard.isVictory()) return new ArrayList<EDirection>();
+
+		long width = beamWidth;
+		while (!stopRequested) {
+			lastBeamWidth = (int)width;
+			int goal = beam(start, lastBeamWidth);
+			if (goal >= 0) return extractPath(goal);
+			if (stopRequested) return null;
+			if (goal == EXHAUSTED) return null; // whole space searched
+			if (width >= maxBeamWidth) return null;
+			width = Math.min((long)maxBeamWidth, width * widthGrowth);
+			++restarts;
+		}
+		return null;
+	}
+
+	/**
+	 * One attempt with the given 'width'.
+	 * @return goal state, {@link #NONE} if the beam died out after dropping some candidates, {@link #EXHAUSTED} if it died out without dropping any
+	 */
+	private int beam(BoardCompact start, int width) {
+		board = start.clone();
+		states.reset(board);
+		cells = states.cells;
+		region = new PlayerRegion(cells);
+		depth = 0;
+		if (candidateKeys.length < candidateHashes.length * states.keyWords) {
+			candidateKeys = new long[candidateHashes.length * states.keyWords];
+		}
+
+		long rootHash = states.encode(board, region);
+		layer[0] = addState(rootHash, NONE, NONE);
+		layerSize = 1;
+
+		boolean dropped = false;
+
+		while (layerSize > 0) {
+			if (stopRequested) return NONE;
+
+			// GENERATE ALL SUCCESSORS OF THE LAYER
+			candidateCount = 0;
+			candidateIndex.clear();
+			for (int i = 0; i < layerSize; ++i) {
+				int goal = expand(layer[i]);
+				if (goal != NONE) return goal;
+			}
+
+			// KEEP THE BEST
+			if (candidateCount > width) dropped = true;
+			int kept = Math.min(width, candidateCount);
+			if (ranking.length < candidateCount) ranking = new long[Math.max(candidateCount, ranking.length * 2)];
+			for (int c = 0; c < candidateCount; ++c) {
+				ranking[c] = (long)candidateH[c] << 32 | c;
+			}
+			Arrays.sort(ranking, 0, candidateCount);
+
+			if (layer.length < kept) layer = new int[Math.max(kept, layer.length * 2)];
+			int keyWords = states.keyWords;
+			for (int i = 0; i < kept; ++i) {
+				int c = (int)ranking[i];
+				System.arraycopy(candidateKeys, c * keyWords, states.scratch, 0, keyWords);
+				layer[i] = addState(candidateHashes[c], candidateParent[c], candidateCode[c]);
+			}
+			layerSize = kept;
+			++depth;
+		}
+
+		return dropped ? NONE : EXHAUSTED;
+	}
+
+	/**
+	 * Adds the successors of the 'state' not seen yet to the candidates.
+	 * @return a goal state if one of the successors is solved, otherwise {@link #NONE}
+	 */
+	private int expand(int state) {
+		states.load(board, state);
+
+		// COLLECT FIRST, region is recomputed for every successor
+		region.compute(board);
+		int count = 0;
+		int[] boardEntities = states.boardEntities();
+		for (int i = 1; i < boardEntities.length; ++i) {
+			int box = cells.indexOfCell(boardEntities[i]);
+			for (EDirection dir : EDirection.arrows()) {
+				int push = PushPlan.code(box, dir);
+				if (!PushPlan.isPossible(board, region, push)) continue;
+				if (count == scratchPushes.length) scratchPushes = Arrays.copyOf(scratchPushes, count * 2);
+				scratchPushes[count++] = push;
+			}
+		}
+
+		int keyWords = states.keyWords;
+		for (int i = 0; i < count; ++i) {
+			int push = scratchPushes[i];
+
+			board.mark();
+			PushPlan.perform(board, cells, push);
+
+			if (pruning != null && pruning.prunePush(board, PushPlan.boxTarget(cells, push))) {
+				board.undo();
+				continue;
+			}
+
+			long hash = states.encode(board, region);
+			if (states.find(hash) != NONE || isCandidate(hash)) {
+				board.undo();
+				continue;
+			}
+
+			if (board.isVictory()) {
+				board.undo();
+				return addState(hash, state, push);
+			}
+
+			int c = candidateCount++;
+			ensureCandidates(candidateCount);
+			System.arraycopy(states.scratch, 0, candidateKeys, c * keyWords, keyWords);
+			candidateHashes[c] = hash;
+			candidateH[c] = heuristic.estimate(board);
+			candidateParent[c] = state;
+			candidateCode[c] = push;
+			candidateIndex.put(hash, c);
+
+			board.undo();
+		}
+		return NONE;
+	}
+
+	/**
+	 * Whether the key in {@link StateStore#scratch} is already a candidate of this layer.
+	 */
+	private boolean isCandidate(long hash) {
+		int c = candidateIndex.get(hash, NONE);
+		if (c == NONE) return false;
+		int keyWords = states.keyWords;
+		for (int i = 0; i < keyWords; ++i) {
+			if (candidateKeys[c * keyWords + i] != states.scratch[i]) return false;
+		}
+		return true;
+	}
+
+	private void ensureCandidates(int count) {
+		if (count <= candidateHashes.length) return;
+		int capacity = candidateHashes.length * 2;
+		candidateKeys = Arrays.copyOf(candidateKeys, capacity * states.keyWords);
+		candidateHashes = Arrays.copyOf(candidateHashes, capacity);
+		candidateH = Arrays.copyOf(candidateH, capacity);
+		candidateParent = Arrays.copyOf(candidateParent, capacity);
+		candidateCode = Arrays.copyOf(candidateCode, capacity);
+	}
+
+	private int addState(long hash, int parentState, int push) {
+		int state = states.add(hash);
+		if (state == parent.length) {
+			int capacity = states.capacity();
+			parent = Arrays.copyOf(parent, capacity);
+			code = Arrays.copyOf(code, capacity);
+		}
+		parent[state] = parentState;
+		code[state] = push;
+		return state;
+	}
+
+	private List<EDirection> extractPath(int goal) {
+		int count = 0;
+		for (int s = goal; parent[s] != NONE; s = parent[s]) ++count;
+		int[] codes = new int[count];
+		for (int s = goal; parent[s] != NONE; s = parent[s]) codes[--count] = code[s];
+		return PushPlan.toDirections(startBoard, cells, codes, codes.length);
+	}
+
+	// =====
+	// STATS
+	// =====
+
+	/**
+	 * Width of the last attempt.
+	 * @return
+	 */
+	public int getLastBeamWidth() {
+		return lastBeamWidth;
+	}
+
+	/**
+	 * Number of layers completed by the last attempt (the plan, if found, has one push more).
+	 * @return
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Number of times the last search widened the beam.
+	 * @return
+	 */
+	public int getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * Number of states stored by the last attempt.
+	 * @return
+	 */
+	public int getNodeCount() {
+		return states.size();
+	}
+
+}
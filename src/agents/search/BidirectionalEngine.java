@@ -0,0 +1,471 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import game.actions.EDirection;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * Bidirectional breadth-first search over push-level states (box configuration + player region, see {@link AStarEngine#setPushLevel(boolean)}):
+ * a forward search pushes from the start, a backward search pulls ({@link game.actions.compact.CPull}) from the goal configuration with the player
+ * in every region it can be in. Both sides store their states in one {@link StateStore}, so the sides meet as soon as one of them generates
+ * a state the other one already has.
+ * <br/>
+ * The side with the smaller frontier expands a whole layer at a time. The plan is spliced from the forward pushes up to the meeting state
+ * and the backward pulls turned into pushes ({@link PushPlan#pushOfPull(CellIndex, int)}) from there down to the goal; walks are added
+ * by {@link PushPlan#toDirections(BoardCompact, CellIndex, int[], int)}. Plans are short but not guaranteed push-optimal.
+ * <br/>
+ * With more goals than boxes the backward search starts from every subset of boxCount goals; if there are more than {@link #MAX_GOAL_SUBSETS}
+ * such subsets the engine searches forward only.
+ * {@link IPruning} is applied to the forward side only.
+ * <br/>
+ * The engine may be reused for many searches (arrays are kept). Cannot be used with multicolored boxes. Not thread-safe, except for {@link #stop()}.
+ */
+public class BidirectionalEngine {
+
+	public static final int NONE = -1;
+
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/**
+	 * Most goal configurations the backward search starts from (levels with more goals than boxes).
+	 */
+	public static final int MAX_GOAL_SUBSETS = 256;
+
+	private static final byte FORWARD = 0;
+
+	private static final byte BACKWARD = 1;
+
+	private IPruning pruning = null;
+
+	private int maxNodes = Integer.MAX_VALUE;
+
+	private volatile boolean stopRequested = false;
+
+	// =====
+	// LEVEL
+	// =====
+
+	private BoardCompact board;
+
+	private BoardCompact startBoard;
+
+	private CellIndex cells;
+
+	private PlayerRegion region;
+
+	// ======
+	// STATES
+	// ======
+
+	private StateStore states;
+
+	/**
+	 * {@link #FORWARD} or {@link #BACKWARD}.
+	 */
+	private byte[] side;
+
+	/**
+	 * Forward: the state the push was done from; backward: the state the pull was done from (closer to the goal). {@link #NONE} for roots.
+	 */
+	private int[] parent;
+
+	/**
+	 * Forward: push code; backward: pull code (box before the pull, pull direction).
+	 */
+	private int[] code;
+
+	private int[] forwardQueue;
+
+	private int forwardHead;
+
+	private int forwardTail;
+
+	private int[] backwardQueue;
+
+	private int backwardHead;
+
+	private int backwardTail;
+
+	// =======
+	// SCRATCH
+	// =======
+
+	private int[] scratchCodes = new int[64];
+
+	// =======
+	// MEETING
+	// =======
+
+	/**
+	 * Forward state the plan goes through.
+	 */
+	private int meetForward;
+
+	/**
+	 * Push from {@link #meetForward} to {@link #meetBackward} or {@link #NONE} if they are the same state.
+	 */
+	private int meetPush;
+
+	/**
+	 * Backward state the plan continues from or {@link #NONE} if {@link #meetForward} is solved.
+	 */
+	private int meetBackward;
+
+	// =====
+	// STATS
+	// =====
+
+	private int forwardExpanded;
+
+	private int backwardExpanded;
+
+	private int pushes;
+
+	public BidirectionalEngine() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity number of states to preallocate arrays for; arrays grow as needed
+	 */
+	public BidirectionalEngine(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+		states = new StateStore(capacity);
+		side = new byte[capacity];
+		parent = new int[capacity];
+		code = new int[capacity];
+		forwardQueue = new int[capacity];
+		backwardQueue = new int[capacity];
+	}
+
+	// =============
+	// CONFIGURATION
+	// =============
+
+	/**
+	 * @param pruning called after every forward push; null == do not prune
+	 * @return
+	 */
+	public BidirectionalEngine setPruning(IPruning pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * The search gives up (returns null) once it stores this many states (both sides together).
+	 * @param maxNodes
+	 * @return
+	 */
+	public BidirectionalEngine setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact)} return null as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	// ======
+	// SEARCH
+	// ======
+
+	/**
+	 * Finds a solution of the 'start' board.
+	 * @param start not altered
+	 * @return directions of the solution (walks included) or null if there is none (within the limits) or the search was stopped
+	 */
+	public List<EDirection> search(BoardCompact start) {
+		reset(start);
+
+		if (board.isVictory()) return new ArrayList<EDirection>();
+
+		long rootHash = states.encode(board, region);
+		forwardQueue[forwardTail++] = addState(rootHash, FORWARD, NONE, NONE);
+
+		boolean bidirectional = addGoalRoots();
+
+		while (forwardHead < forwardTail && (!bidirectional || backwardHead < backwardTail)) {
+			boolean forward = !bidirectional || forwardTail - forwardHead <= backwardTail - backwardHead;
+			if (forward ? expandForwardLayer() : expandBackwardLayer()) return splice();
+			if (stopRequested || states.size() >= maxNodes) return null;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds the backward roots: boxes on every subset of boxCount goals, one root per player region of each.
+	 * @return false if there are fewer goals than boxes or more than {@link #MAX_GOAL_SUBSETS} goal subsets (no backward search)
+	 */
+	private boolean addGoalRoots() {
+		int[] allGoals = new int[cells.size()];
+		int goalCount = 0;
+		for (int i = 0; i < cells.size(); ++i) {
+			if (CTile.forSomeBox(board.tileAt(cells.boardCell(i)))) allGoals[goalCount++] = i;
+		}
+		int boxCount = board.boxCount;
+		if (goalCount < boxCount) return false;
+
+		// C(goalCount, boxCount), stopping at the limit
+		long subsets = 1;
+		for (int i = 0; i < boxCount && subsets <= MAX_GOAL_SUBSETS; ++i) {
+			subsets = subsets * (goalCount - i) / (i + 1);
+		}
+		if (subsets > MAX_GOAL_SUBSETS) return false;
+
+		// subset[i] indexes allGoals, increasing, so the goals stay sorted
+		int[] subset = new int[boxCount];
+		for (int i = 0; i < boxCount; ++i) subset[i] = i;
+		int[] goals = new int[boxCount];
+		boolean[] covered = new boolean[cells.size()];
+
+		while (true) {
+			for (int i = 0; i < boxCount; ++i) goals[i] = allGoals[subset[i]];
+			addGoalRoots(goals, covered);
+
+			// NEXT SUBSET
+			int i = boxCount - 1;
+			while (i >= 0 && subset[i] == goalCount - boxCount + i) --i;
+			if (i < 0) return true;
+			++subset[i];
+			for (int j = i + 1; j < boxCount; ++j) subset[j] = subset[j - 1] + 1;
+		}
+	}
+
+	/**
+	 * Adds the backward roots with boxes on the 'goals', one root per player region.
+	 * @param goals sorted cell indices
+	 * @param covered scratch, size of {@link CellIndex#size()}
+	 */
+	private void addGoalRoots(int[] goals, boolean[] covered) {
+		// cells already covered by some root region
+		Arrays.fill(covered, false);
+		for (int goal : goals) {
+			covered[goal] = true;
+		}
+
+		for (int player = 0; player < cells.size(); ++player) {
+			if (covered[player]) continue;
+			region.compute(player, goals);
+			for (int i = player; i < cells.size(); ++i) {
+				if (region.isReachable(i)) covered[i] = true;
+			}
+
+			// cannot collide with the forward root, the start is not solved
+			long hash = states.encode(region, goals);
+			if (backwardTail == backwardQueue.length) backwardQueue = Arrays.copyOf(backwardQueue, backwardTail * 2);
+			backwardQueue[backwardTail++] = addState(hash, BACKWARD, NONE, NONE);
+		}
+	}
+
+	/**
+	 * Expands all forward states of the current layer.
+	 * @return true if the sides met
+	 */
+	private boolean expandForwardLayer() {
+		int layerEnd = forwardTail;
+		while (forwardHead < layerEnd) {
+			if (stopRequested || states.size() >= maxNodes) return false;
+			int state = forwardQueue[forwardHead++];
+			states.load(board, state);
+			++forwardExpanded;
+
+			int count = collect(false);
+			for (int i = 0; i < count; ++i) {
+				int push = scratchCodes[i];
+
+				board.mark();
+				PushPlan.perform(board, cells, push);
+				if (pruning != null && pruning.prunePush(board, PushPlan.boxTarget(cells, push))) {
+					board.undo();
+					continue;
+				}
+
+				long hash = states.encode(board, region);
+				int other = states.find(hash);
+				if (other == NONE) {
+					int child = addState(hash, FORWARD, state, push);
+					if (forwardTail == forwardQueue.length) forwardQueue = Arrays.copyOf(forwardQueue, forwardTail * 2);
+					forwardQueue[forwardTail++] = child;
+					if (board.isVictory()) {
+						// forward-only search, or a goal region the backward side does not have
+						board.undo();
+						meet(child, NONE, NONE);
+						return true;
+					}
+				} else
+				if (side[other] == BACKWARD) {
+					board.undo();
+					meet(state, push, other);
+					return true;
+				}
+
+				board.undo();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Expands all backward states of the current layer.
+	 * @return true if the sides met
+	 */
+	private boolean expandBackwardLayer() {
+		int layerEnd = backwardTail;
+		while (backwardHead < layerEnd) {
+			if (stopRequested || states.size() >= maxNodes) return false;
+			int state = backwardQueue[backwardHead++];
+			states.load(board, state);
+			++backwardExpanded;
+
+			int count = collect(true);
+			for (int i = 0; i < count; ++i) {
+				int pull = scratchCodes[i];
+
+				board.mark();
+				PushPlan.performPull(board, cells, pull);
+
+				long hash = states.encode(board, region);
+				int other = states.find(hash);
+				if (other == NONE) {
+					int child = addState(hash, BACKWARD, state, pull);
+					if (backwardTail == backwardQueue.length) backwardQueue = Arrays.copyOf(backwardQueue, backwardTail * 2);
+					backwardQueue[backwardTail++] = child;
+				} else
+				if (side[other] == FORWARD) {
+					board.undo();
+					meet(other, PushPlan.pushOfPull(cells, pull), state);
+					return true;
+				}
+
+				board.undo();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the pushes (or pulls) possible on the {@link #board} into {@link #scratchCodes}; region is recomputed for every successor
+	 * so they are collected first.
+	 * @return number of codes
+	 */
+	private int collect(boolean pulls) {
+		region.compute(board);
+		int count = 0;
+		int[] boardEntities = states.boardEntities();
+		for (int i = 1; i < boardEntities.length; ++i) {
+			int box = cells.indexOfCell(boardEntities[i]);
+			for (EDirection dir : EDirection.arrows()) {
+				int c = PushPlan.code(box, dir);
+				if (pulls ? !PushPlan.isPullPossible(board, region, c) : !PushPlan.isPossible(board, region, c)) continue;
+				if (count == scratchCodes.length) scratchCodes = Arrays.copyOf(scratchCodes, count * 2);
+				scratchCodes[count++] = c;
+			}
+		}
+		return count;
+	}
+
+	private void reset(BoardCompact start) {
+		board = start.clone();
+		startBoard = start.clone();
+		states.reset(board);
+		cells = states.cells;
+		region = new PlayerRegion(cells);
+
+		forwardHead = forwardTail = 0;
+		backwardHead = backwardTail = 0;
+		meetForward = meetPush = meetBackward = NONE;
+		forwardExpanded = 0;
+		backwardExpanded = 0;
+		pushes = 0;
+		stopRequested = false;
+	}
+
+	private int addState(long hash, byte stateSide, int parentState, int stateCode) {
+		int state = states.add(hash);
+		if (state == side.length) {
+			int capacity = states.capacity();
+			side = Arrays.copyOf(side, capacity);
+			parent = Arrays.copyOf(parent, capacity);
+			code = Arrays.copyOf(code, capacity);
+		}
+		side[state] = stateSide;
+		parent[state] = parentState;
+		code[state] = stateCode;
+		return state;
+	}
+
+	private void meet(int forwardState, int push, int backwardState) {
+		meetForward = forwardState;
+		meetPush = push;
+		meetBackward = backwardState;
+	}
+
+	// ====
+	// PLAN
+	// ====
+
+	/**
+	 * Forward pushes from the root to {@link #meetForward}, {@link #meetPush}, then the backward pulls from {@link #meetBackward}
+	 * up to its root, each reversed into a push.
+	 */
+	private List<EDirection> splice() {
+		int forwardCount = 0;
+		for (int s = meetForward; parent[s] != NONE; s = parent[s]) ++forwardCount;
+		int backwardCount = 0;
+		if (meetBackward != NONE) {
+			for (int s = meetBackward; parent[s] != NONE; s = parent[s]) ++backwardCount;
+		}
+
+		pushes = forwardCount + (meetPush == NONE ? 0 : 1) + backwardCount;
+		int[] codes = new int[pushes];
+
+		int i = forwardCount;
+		for (int s = meetForward; parent[s] != NONE; s = parent[s]) codes[--i] = code[s];
+		i = forwardCount;
+		if (meetPush != NONE) codes[i++] = meetPush;
+		if (meetBackward != NONE) {
+			for (int s = meetBackward; parent[s] != NONE; s = parent[s]) codes[i++] = PushPlan.pushOfPull(cells, code[s]);
+		}
+
+		return PushPlan.toDirections(startBoard, cells, codes, pushes);
+	}
+
+	// =====
+	// STATS
+	// =====
+
+	/**
+	 * Number of states stored by the last search (both sides).
+	 * @return
+	 */
+	public int getNodeCount() {
+		return states.size();
+	}
+
+	public int getForwardExpanded() {
+		return forwardExpanded;
+	}
+
+	public int getBackwardExpanded() {
+		return backwardExpanded;
+	}
+
+	/**
+	 * Number of pushes of the last plan found.
+	 * @return
+	 */
+	public int getPushes() {
+		return pushes;
+	}
+
+}
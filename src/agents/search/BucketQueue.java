@@ -0,0 +1,207 @@
+package agents.search;
+
+import java.util.Arrays;
+
+/**
+ * Open list for best-first searches whose priorities are small non-negative integers (f = g + h of Sokoban states).
+ * <br/>
+ * Items (node numbers) are kept in int-stacks, one per f (and per h within the same f for {@link ETieBreak#LOWEST_H});
+ * {@link #push(int, int, int)} is O(1), {@link #poll()} is amortized O(1) as the cursor only moves forward until a lower f is pushed.
+ * <br/>
+ * Decrease-key is done by lazy deletion: push the node again with its new priority and skip stale entries after {@link #poll()}
+ * (e.g. the node is already closed, see {@link AStarEngine}).
+ * <br/>
+ * Not thread-safe.
+ */
+public class BucketQueue {
+
+	/**
+	 * Which of the items with the same f is polled first.
+	 */
+	public static enum ETieBreak {
+
+		/**
+		 * The one with the lowest h, i.e., the one closest to the goal; LIFO among equal h.
+		 */
+		LOWEST_H,
+
+		/**
+		 * The one pushed last, ignoring h.
+		 */
+		LIFO
+
+	}
+
+	private static final int[] EMPTY = new int[0];
+
+	private final ETieBreak tieBreak;
+
+	/**
+	 * [f][h] stack of items; [f][0] only for {@link ETieBreak#LIFO}.
+	 */
+	private int[][][] stacks = new int[64][][];
+
+	/**
+	 * [f][h] number of items within the stack.
+	 */
+	private int[][] stackSizes = new int[64][];
+
+	/**
+	 * [f] number of items with that f.
+	 */
+	private int[] counts = new int[64];
+
+	/**
+	 * [f] lowest h that may have items (all lower are empty).
+	 */
+	private int[] minH = new int[64];
+
+	/**
+	 * Lowest f that may have items (all lower are empty).
+	 */
+	private int minF = Integer.MAX_VALUE;
+
+	/**
+	 * Highest f ever pushed since the last {@link #clear()}.
+	 */
+	private int maxF = -1;
+
+	private int size = 0;
+
+	private int lastF;
+
+	private int lastH;
+
+	public BucketQueue() {
+		this(ETieBreak.LOWEST_H);
+	}
+
+	public BucketQueue(ETieBreak tieBreak) {
+		this.tieBreak = tieBreak;
+		Arrays.fill(minH, Integer.MAX_VALUE);
+	}
+
+	public ETieBreak getTieBreak() {
+		return tieBreak;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds 'item' with priority 'f'; 'h' is used for {@link ETieBreak#LOWEST_H} only.
+	 * @param item
+	 * @param f non-negative
+	 * @param h non-negative
+	 */
+	public void push(int item, int f, int h) {
+		if (f < 0 || h < 0) throw new RuntimeException("Negative priority f = " + f + ", h = " + h + ".");
+		if (tieBreak == ETieBreak.LIFO) h = 0;
+
+		if (f >= counts.length) growF(f);
+		int[][] row = stacks[f];
+		if (row == null || h >= row.length) row = growH(f, h);
+		int[] stack = row[h];
+		int stackSize = stackSizes[f][h];
+		if (stackSize == stack.length) {
+			stack = row[h] = Arrays.copyOf(stack, Math.max(16, stackSize * 2));
+		}
+		stack[stackSize] = item;
+		stackSizes[f][h] = stackSize + 1;
+
+		++counts[f];
+		if (h < minH[f]) minH[f] = h;
+		if (f < minF) minF = f;
+		if (f > maxF) maxF = f;
+		++size;
+	}
+
+	/**
+	 * Removes and returns the item with the lowest priority; the queue must not be empty.
+	 * Its priority is available via {@link #lastF()} and {@link #lastH()} afterwards.
+	 * @return
+	 */
+	public int poll() {
+		if (size == 0) throw new RuntimeException("BucketQueue is empty.");
+		while (counts[minF] == 0) ++minF;
+		int f = minF;
+		int[] sizes = stackSizes[f];
+		int h = minH[f];
+		while (sizes[h] == 0) ++h;
+		minH[f] = h;
+
+		int result = stacks[f][h][--sizes[h]];
+		if (--counts[f] == 0) minH[f] = Integer.MAX_VALUE;
+		--size;
+		lastF = f;
+		lastH = h;
+		return result;
+	}
+
+	/**
+	 * Lowest f within the queue; the queue must not be empty.
+	 * @return
+	 */
+	public int peekF() {
+		if (size == 0) throw new RuntimeException("BucketQueue is empty.");
+		while (counts[minF] == 0) ++minF;
+		return minF;
+	}
+
+	/**
+	 * f of the item returned by the last {@link #poll()}.
+	 * @return
+	 */
+	public int lastF() {
+		return lastF;
+	}
+
+	/**
+	 * h of the item returned by the last {@link #poll()} (0 for {@link ETieBreak#LIFO}).
+	 * @return
+	 */
+	public int lastH() {
+		return lastH;
+	}
+
+	/**
+	 * Removes all items; keeps the stacks allocated.
+	 */
+	public void clear() {
+		for (int f = 0; f <= maxF; ++f) {
+			if (stackSizes[f] != null) Arrays.fill(stackSizes[f], 0);
+			counts[f] = 0;
+			minH[f] = Integer.MAX_VALUE;
+		}
+		minF = Integer.MAX_VALUE;
+		maxF = -1;
+		size = 0;
+	}
+
+	private void growF(int f) {
+		int length = Math.max(counts.length * 2, f + 1);
+		stacks = Arrays.copyOf(stacks, length);
+		stackSizes = Arrays.copyOf(stackSizes, length);
+		counts = Arrays.copyOf(counts, length);
+		int oldLength = minH.length;
+		minH = Arrays.copyOf(minH, length);
+		Arrays.fill(minH, oldLength, length, Integer.MAX_VALUE);
+	}
+
+	private int[][] growH(int f, int h) {
+		int[][] row = stacks[f];
+		int oldLength = row == null ? 0 : row.length;
+		int length = Math.max(Math.max(4, oldLength * 2), h + 1);
+		row = row == null ? new int[length][] : Arrays.copyOf(row, length);
+		Arrays.fill(row, oldLength, length, EMPTY);
+		stacks[f] = row;
+		stackSizes[f] = stackSizes[f] == null ? new int[length] : Arrays.copyOf(stackSizes[f], length);
+		return row;
+	}
+
+}
@@ -0,0 +1,443 @@
+package agents.search;
+
+import java.util.Arrays;
+
+import agents.collections.LongIntMap;
+import game.actions.EDirection;
+import game.board.CellIndex;
+import game.board.DeadlockDetector;
+import game.board.PlayerRegion;
+import game.board.Zobrist;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.minimal.StateCanonical;
+import game.board.oop.EEntity;
+
+/**
+ * Corral analysis of push-level states. A corral is an area the player cannot reach, fenced by boxes; its boxes are the boxes next to the area.
+ * <br/>
+ * A corral is a PI-corral if the player can make every push that could ever open it: each push of its boxes either goes into the corral
+ * from a cell the player reaches right now ("P"), or is impossible until the corral changes ("I"). A PI-corral with some box off goal
+ * has to change in every solution, and the push that first changes it can be made right now and moved to the front of the plan without
+ * making it longer. Hence only the pushes into one PI-corral need to be searched ({@link #isPushAllowed(int)}), which keeps the search
+ * complete and push-optimal.
+ * <br/>
+ * A PI-corral is a deadlock if no push into it is possible, or if its boxes alone (all other boxes removed, which only helps)
+ * cannot reach their goals within {@link #MAX_CORRAL_NODES} pushes-states. Verdicts of the small search are cached per box configuration of the corral.
+ * <br/>
+ * Not thread-safe, use one instance per search thread. The small search cannot be used with multicolored boxes, such levels get the pruning only.
+ */
+public class CorralAnalyzer {
+
+	/**
+	 * States the deadlock search of a corral stores at most; a corral not decided within them counts as no deadlock.
+	 */
+	public static final int MAX_CORRAL_NODES = 256;
+
+	/**
+	 * Cached verdicts kept at most; the cache is cleared when it grows bigger.
+	 */
+	public static final int MAX_CACHED_CORRALS = 1 << 20;
+
+	private static final int UNKNOWN = 0;
+	private static final int DEADLOCK = 1;
+	private static final int SOLVABLE = 2;
+
+	private final CellIndex cells;
+
+	private final DeadlockDetector deadlocks;
+
+	// ==========
+	// LABELLING
+	// ==========
+
+	private int stamp = 0;
+
+	/**
+	 * [cell] == stamp: the empty unreachable cell was flooded by the current analysis, into {@link #corralOf}.
+	 */
+	private final int[] flooded;
+
+	private final int[] corralOf;
+
+	/**
+	 * [cell] == corralStamp: the box belongs to the corral being evaluated.
+	 */
+	private final int[] boxMarks;
+
+	private int corralStamp = 0;
+
+	private final int[] area;
+
+	private final int[] corralBoxes;
+
+	// ===========
+	// PI-CORRAL
+	// ===========
+
+	/**
+	 * Pushes into the chosen PI-corral.
+	 */
+	private int[] allowed;
+
+	private int allowedCount;
+
+	private int[] candidate;
+
+	/**
+	 * [push code] == allowedStamp: the push is in {@link #allowed}.
+	 */
+	private final int[] allowedMarks;
+
+	private int allowedStamp = 0;
+
+	private boolean restricted;
+
+	// ==============
+	// CORRAL SEARCH
+	// ==============
+
+	private final boolean searchable;
+
+	/**
+	 * The level with the boxes of the corral only.
+	 */
+	private final BoardCompact relaxed;
+
+	private final PlayerRegion relaxedRegion;
+
+	private final StateStore relaxedStates = new StateStore(1 << 10);
+
+	private int[] queue = new int[256];
+
+	private int[] scratchPushes = new int[64];
+
+	/**
+	 * Zobrist key of the corral boxes and their player region -> verdict.
+	 */
+	private final LongIntMap cache = new LongIntMap();
+
+	private final Zobrist zobrist;
+
+	// =====
+	// STATS
+	// =====
+
+	private long piCorrals;
+
+	private long corralDeadlocks;
+
+	private long corralSearches;
+
+	/**
+	 * @param board any state of the level
+	 * @param cells index of the level the push codes refer to
+	 */
+	public CorralAnalyzer(BoardCompact board, CellIndex cells) {
+		this.cells = cells;
+		this.deadlocks = DeadlockDetector.forLevel(board);
+		int size = cells.size();
+		flooded = new int[size];
+		corralOf = new int[size];
+		boxMarks = new int[size];
+		area = new int[size];
+		corralBoxes = new int[size];
+		allowed = new int[16];
+		candidate = new int[16];
+		allowedMarks = new int[size * 4];
+
+		boolean singleColored = true;
+		for (int cell = 0; cell < board.tiles.length; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell)) && !CTile.isBox(1, board.tileAt(cell))) singleColored = false;
+		}
+		searchable = singleColored;
+		relaxed = board.clone();
+		relaxedRegion = new PlayerRegion(cells);
+		zobrist = Zobrist.forLevel(board.width(), board.height());
+	}
+
+	// ========
+	// ANALYSIS
+	// ========
+
+	/**
+	 * Analyzes the corrals of the 'board' and picks the PI-corral with the fewest pushes into it, see {@link #isPushAllowed(int)}.
+	 * @param board not altered
+	 * @param region computed for the 'board'
+	 * @return false if some PI-corral is a deadlock (the state has no solution)
+	 */
+	public boolean analyze(BoardCompact board, PlayerRegion region) {
+		restricted = false;
+		allowedCount = 0;
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(flooded, 0);
+			stamp = 1;
+		}
+
+		int corrals = 0;
+		for (int start = 0; start < cells.size(); ++start) {
+			if (flooded[start] == stamp || region.isReachable(start) || isBox(board, start)) continue;
+			int areaSize = flood(board, start, corrals);
+			if (!evaluate(board, region, corrals, areaSize)) {
+				restricted = false;
+				return false;
+			}
+			++corrals;
+		}
+
+		if (restricted) {
+			++allowedStamp;
+			if (allowedStamp == Integer.MAX_VALUE) {
+				Arrays.fill(allowedMarks, 0);
+				allowedStamp = 1;
+			}
+			for (int i = 0; i < allowedCount; ++i) {
+				allowedMarks[allowed[i]] = allowedStamp;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the push should be searched according to the last {@link #analyze(BoardCompact, PlayerRegion)}: true for all pushes
+	 * unless a PI-corral was found, then only for the pushes into it.
+	 * @param code {@link PushPlan#code(int, EDirection)}
+	 * @return
+	 */
+	public boolean isPushAllowed(int code) {
+		return !restricted || allowedMarks[code] == allowedStamp;
+	}
+
+	/**
+	 * Whether the last analysis found a PI-corral, i.e., {@link #isPushAllowed(int)} filters.
+	 * @return
+	 */
+	public boolean isRestricted() {
+		return restricted;
+	}
+
+	/**
+	 * Floods the empty unreachable area containing 'start' into {@link #area}.
+	 * @return size of the area
+	 */
+	private int flood(BoardCompact board, int start, int corral) {
+		int size = 0;
+		flooded[start] = stamp;
+		corralOf[start] = corral;
+		area[size++] = start;
+		for (int i = 0; i < size; ++i) {
+			int cell = area[i];
+			for (EDirection dir : EDirection.arrows()) {
+				int next = cells.neighbour(cell, dir);
+				if (next == CellIndex.NONE || flooded[next] == stamp || isBox(board, next)) continue;
+				flooded[next] = stamp;
+				corralOf[next] = corral;
+				area[size++] = next;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Evaluates the corral just flooded into {@link #area}; keeps it as the chosen PI-corral if it is the best one so far.
+	 * @return false if it is a deadlock
+	 */
+	private boolean evaluate(BoardCompact board, PlayerRegion region, int corral, int areaSize) {
+		// BOXES OF THE CORRAL
+		if (++corralStamp == Integer.MAX_VALUE) {
+			Arrays.fill(boxMarks, 0);
+			corralStamp = 1;
+		}
+		int boxCount = 0;
+		boolean misplaced = false;
+		for (int i = 0; i < areaSize; ++i) {
+			for (EDirection dir : EDirection.arrows()) {
+				int next = cells.neighbour(area[i], dir);
+				if (next == CellIndex.NONE || boxMarks[next] == corralStamp || !isBox(board, next)) continue;
+				boxMarks[next] = corralStamp;
+				corralBoxes[boxCount++] = next;
+				if (!DeadlockDetector.isInPlace(board.tileAt(cells.boardCell(next)))) misplaced = true;
+			}
+		}
+		if (!misplaced) return true; // need not change
+
+		// PI CONDITIONS, collect the pushes into the corral
+		int count = 0;
+		for (int b = 0; b < boxCount; ++b) {
+			int box = corralBoxes[b];
+			for (EDirection dir : EDirection.arrows()) {
+				int target = cells.neighbour(box, dir);
+				int behind = cells.neighbour(box, dir.opposite());
+				if (target == CellIndex.NONE || behind == CellIndex.NONE) continue; // never possible
+				boolean targetInside = isInside(board, target, corral);
+				boolean behindInside = isInside(board, behind, corral);
+				if (behindInside) continue; // the player must be inside first
+				if (!targetInside) return true; // I: the box may leave the corral
+				if (!region.isReachable(behind)) return true; // P: the player cannot get there now
+				if (isBox(board, target)) continue; // blocked until the corral changes
+				if (count == candidate.length) candidate = Arrays.copyOf(candidate, count * 2);
+				candidate[count++] = PushPlan.code(box, dir);
+			}
+		}
+
+		++piCorrals;
+		if (count == 0) {
+			++corralDeadlocks;
+			return false; // has to change and cannot
+		}
+		if (searchable && isCorralDeadlock(board, corral, boxCount)) {
+			++corralDeadlocks;
+			return false;
+		}
+
+		if (!restricted || count < allowedCount) {
+			int[] swap = allowed;
+			allowed = candidate;
+			candidate = swap;
+			allowedCount = count;
+			restricted = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the 'cell' belonged to the 'corral' (its area or a box of it) when it was evaluated.
+	 */
+	private boolean isCorralCell(int cell, int corral) {
+		return boxMarks[cell] == corralStamp || (flooded[cell] == stamp && corralOf[cell] == corral);
+	}
+
+	private boolean isInside(BoardCompact board, int cell, int corral) {
+		if (isBox(board, cell)) return boxMarks[cell] == corralStamp;
+		return flooded[cell] == stamp && corralOf[cell] == corral;
+	}
+
+	private boolean isBox(BoardCompact board, int cell) {
+		return CTile.isSomeBox(board.tileAt(cells.boardCell(cell)));
+	}
+
+	// =============
+	// CORRAL SEARCH
+	// =============
+
+	/**
+	 * Whether the boxes of the corral ({@link #corralBoxes}), all other boxes removed, can never all reach goals.
+	 */
+	private boolean isCorralDeadlock(BoardCompact board, int corral, int boxCount) {
+		if (boxCount == board.boxCount) return false; // nothing to relax, that is the search itself
+
+		// KEY: the boxes of the corral and the player region they leave
+		int playerRegion = relaxedRegion.compute(cells.indexOf(board.playerX, board.playerY), corralBoxes, boxCount);
+		long key = StateCanonical.zobrist(zobrist, cells, playerRegion, corralBoxes, boxCount);
+		int verdict = cache.get(key, UNKNOWN);
+		if (verdict != UNKNOWN) return verdict == DEADLOCK;
+
+		// THE CORRAL ALONE
+		int[] tiles = relaxed.tiles;
+		for (int cell = 0; cell < tiles.length; ++cell) {
+			if (!CTile.isWall(tiles[cell])) tiles[cell] = (tiles[cell] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
+		}
+		int inPlace = 0;
+		for (int b = 0; b < boxCount; ++b) {
+			int cell = cells.boardCell(corralBoxes[b]);
+			tiles[cell] = (tiles[cell] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.BOX_1.getFlag();
+			if (CTile.forSomeBox(tiles[cell])) ++inPlace;
+		}
+		int player = board.playerCell();
+		tiles[player] = (tiles[player] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.PLAYER.getFlag();
+		relaxed.playerX = board.playerX;
+		relaxed.playerY = board.playerY;
+		relaxed.boxCount = boxCount;
+		relaxed.boxInPlaceCount = inPlace;
+		relaxed.invalidateHash();
+
+		++corralSearches;
+		relaxedStates.reset(relaxed, cells);
+		boolean deadlock = searchCorral(corral, relaxedStates.encode(relaxed, relaxedRegion));
+		if (cache.size() >= MAX_CACHED_CORRALS) cache.clear();
+		cache.put(key, deadlock ? DEADLOCK : SOLVABLE);
+		return deadlock;
+	}
+
+	/**
+	 * Breadth-first push search of the {@link #relaxed} board, its root encoded in {@link StateStore#scratch}.
+	 * @param corral the corral whose boxes are on the board
+	 * @param rootHash hash of the root key
+	 * @return true if it runs out of states without solving the board or pushing a box out of the corral
+	 */
+	private boolean searchCorral(int corral, long rootHash) {
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = relaxedStates.add(rootHash);
+		while (head < tail) {
+			int state = queue[head++];
+			relaxedStates.load(relaxed, state);
+			relaxedRegion.compute(relaxed);
+
+			int count = 0;
+			int[] boardEntities = relaxedStates.boardEntities();
+			for (int i = 1; i < boardEntities.length; ++i) {
+				int box = cells.indexOfCell(boardEntities[i]);
+				for (EDirection dir : EDirection.arrows()) {
+					int code = PushPlan.code(box, dir);
+					if (!PushPlan.isPossible(relaxed, relaxedRegion, code)) continue;
+					if (count == scratchPushes.length) scratchPushes = Arrays.copyOf(scratchPushes, count * 2);
+					scratchPushes[count++] = code;
+				}
+			}
+
+			for (int i = 0; i < count; ++i) {
+				int code = scratchPushes[i];
+				relaxed.mark();
+				PushPlan.perform(relaxed, cells, code);
+				int target = cells.neighbour(PushPlan.box(code), PushPlan.dir(code));
+				if (relaxed.isVictory() || !isCorralCell(target, corral)) {
+					relaxed.undo();
+					return false;
+				}
+				if (!deadlocks.isDeadlocked(relaxed, PushPlan.boxTarget(cells, code))) {
+					long hash = relaxedStates.encode(relaxed, relaxedRegion);
+					if (relaxedStates.find(hash) == StateStore.NONE) {
+						if (relaxedStates.size() >= MAX_CORRAL_NODES) {
+							relaxed.undo();
+							return false; // undecided
+						}
+						if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+						queue[tail++] = relaxedStates.add(hash);
+					}
+				}
+				relaxed.undo();
+			}
+		}
+		return true;
+	}
+
+	// =====
+	// STATS
+	// =====
+
+	/**
+	 * Number of PI-corrals found by all analyses so far.
+	 * @return
+	 */
+	public long getPiCorrals() {
+		return piCorrals;
+	}
+
+	/**
+	 * Number of PI-corrals found to be deadlocks so far.
+	 * @return
+	 */
+	public long getCorralDeadlocks() {
+		return corralDeadlocks;
+	}
+
+	/**
+	 * Number of deadlock searches run (cache misses).
+	 * @return
+	 */
+	public long getCorralSearches() {
+		return corralSearches;
+	}
+
+}
@@ -0,0 +1,524 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import game.actions.EDirection;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+
+/**
+ * Hash-distributed parallel A* (HDA*) over push-level states (box configuration + player region, see {@link AStarEngine#setPushLevel(boolean)}).
+ * <br/>
+ * Every worker thread owns the states whose hash maps to it: it alone stores them (its own {@link StateStore}), detects their duplicates
+ * and keeps them in its own open list ({@link BucketQueue}). A worker expands its best state on its own board; successors owned by
+ * other workers are batched and sent to their owners through lock-free {@link MpscQueue}s, so no locks are taken on the search path.
+ * <br/>
+ * A goal found by any worker becomes the incumbent; workers keep expanding states with f lower than the incumbent cost and the search
+ * ends once no worker is busy and no batch is in flight. This is tracked by a single counter of busy workers + batches in flight:
+ * a batch is counted before it is sent and uncounted only after the receiver has become busy, so the counter reaching 0 is final.
+ * With an admissible {@link IHeuristic} (lower bound on pushes) the plan is push-optimal, as with {@link AStarEngine}.
+ * <br/>
+ * {@link IHeuristic} and {@link IPruning} are called from all worker threads at once, hence they must be thread-safe
+ * (e.g. read-only tables prepared before the search). Cannot be used with multicolored boxes. Not thread-safe, except for {@link #stop()}.
+ */
+public class HDAStarEngine {
+
+	public static final int NONE = -1;
+
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/**
+	 * States per batch sent to another worker.
+	 */
+	private static final int BATCH_SIZE = 64;
+
+	/**
+	 * Partially filled batches are sent after this many expansions (and whenever the worker runs out of work).
+	 */
+	private static final int FLUSH_EXPANSIONS = 16;
+
+	private IHeuristic heuristic = IHeuristic.ZERO;
+
+	private IPruning pruning = null;
+
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	private int maxNodes = Integer.MAX_VALUE;
+
+	private volatile boolean stopRequested = false;
+
+	// ======
+	// SEARCH
+	// ======
+
+	private Worker[] workers;
+
+	/**
+	 * Busy workers + batches in flight; 0 == the search is over.
+	 */
+	private final AtomicLong work = new AtomicLong();
+
+	/**
+	 * Cost of the incumbent (pushes), Integer.MAX_VALUE if there is none.
+	 */
+	private volatile int bestG;
+
+	/**
+	 * Global id of the incumbent goal state, see {@link #id(int, int)}.
+	 */
+	private long bestState;
+
+	private volatile Throwable failure;
+
+	private BoardCompact startBoard;
+
+	private CellIndex cells;
+
+	/**
+	 * Batch of states sent to their owner; the keys are laid out as in {@link StateStore#keys}.
+	 */
+	private static class Batch {
+
+		final long[] keys;
+
+		final long[] hashes = new long[BATCH_SIZE];
+
+		final int[] g = new int[BATCH_SIZE];
+
+		final int[] h = new int[BATCH_SIZE];
+
+		final long[] parent = new long[BATCH_SIZE];
+
+		final int[] code = new int[BATCH_SIZE];
+
+		int count = 0;
+
+		Batch(int keyWords) {
+			keys = new long[BATCH_SIZE * keyWords];
+		}
+
+	}
+
+	public HDAStarEngine() {
+	}
+
+	// =============
+	// CONFIGURATION
+	// =============
+
+	/**
+	 * Must be thread-safe; must estimate pushes, not steps, for the plan to be push-optimal.
+	 * @param heuristic
+	 * @return
+	 */
+	public HDAStarEngine setHeuristic(IHeuristic heuristic) {
+		this.heuristic = heuristic == null ? IHeuristic.ZERO : heuristic;
+		return this;
+	}
+
+	/**
+	 * @param pruning called after every push, must be thread-safe; null == do not prune
+	 * @return
+	 */
+	public HDAStarEngine setPruning(IPruning pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * Number of worker threads; default is the number of available processors.
+	 * @param threadCount
+	 * @return
+	 */
+	public HDAStarEngine setThreads(int threadCount) {
+		if (threadCount < 1) throw new RuntimeException("threadCount must be at least 1, got " + threadCount + ".");
+		this.threadCount = threadCount;
+		return this;
+	}
+
+	/**
+	 * The search gives up (returns null) once it stores this many states (split evenly among the workers).
+	 * @param maxNodes
+	 * @return
+	 */
+	public HDAStarEngine setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact)} return null as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	// ======
+	// SEARCH
+	// ======
+
+	/**
+	 * Finds the push-optimal solution of the 'start' board (given an admissible heuristic) using {@link #setThreads(int)} threads.
+	 * @param start not altered
+	 * @return directions of the solution (walks included) or null if there is none (within the limits) or the search was stopped
+	 */
+	public List<EDirection> search(BoardCompact start) {
+		stopRequested = false;
+		failure = null;
+		bestG = Integer.MAX_VALUE;
+		bestState = NONE;
+		startBoard = start.clone();
+
+		if (startBoard.isVictory()) {
+			bestG = 0;
+			return new ArrayList<EDirection>();
+		}
+
+		int nodeLimit = Math.max(1, maxNodes / threadCount);
+		workers = new Worker[threadCount];
+		for (int i = 0; i < threadCount; ++i) {
+			workers[i] = new Worker(i, start, nodeLimit);
+		}
+		cells = workers[0].states.cells;
+
+		// ROOT GOES TO ITS OWNER
+		Worker first = workers[0];
+		long rootHash = first.states.encode(first.board, first.region);
+		Worker owner = workers[owner(rootHash)];
+		System.arraycopy(first.states.scratch, 0, owner.states.scratch, 0, first.states.keyWords);
+		owner.relax(rootHash, 0, heuristic.estimate(first.board), NONE, NONE);
+
+		work.set(threadCount);
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; ++i) {
+			threads[i] = new Thread(workers[i], "HDAStar-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				stop();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (failure != null) throw new RuntimeException("HDA* worker failed.", failure);
+		if (stopRequested || bestState == NONE) return null;
+		return extractPath(bestState);
+	}
+
+	/**
+	 * Worker owning the state with the 'hash'; uses the high bits, the low ones index the {@link StateStore}.
+	 */
+	private int owner(long hash) {
+		return (int)((hash >>> 32) & 0x7fffffffL) % threadCount;
+	}
+
+	/**
+	 * Global id of the 'state' of the 'worker'.
+	 */
+	private long id(int worker, int state) {
+		return (long)state * threadCount + worker;
+	}
+
+	private synchronized void offerSolution(int g, long state) {
+		if (g < bestG) {
+			bestState = state;
+			bestG = g;
+		}
+	}
+
+	private List<EDirection> extractPath(long goal) {
+		int count = 0;
+		for (long s = goal; workers[(int)(s % threadCount)].parent[(int)(s / threadCount)] != NONE; ) {
+			s = workers[(int)(s % threadCount)].parent[(int)(s / threadCount)];
+			++count;
+		}
+		int[] codes = new int[count];
+		for (long s = goal; count > 0; ) {
+			Worker worker = workers[(int)(s % threadCount)];
+			int state = (int)(s / threadCount);
+			codes[--count] = worker.code[state];
+			s = worker.parent[state];
+		}
+		return PushPlan.toDirections(startBoard, cells, codes, codes.length);
+	}
+
+	// ======
+	// WORKER
+	// ======
+
+	private class Worker implements Runnable {
+
+		final int index;
+
+		final int nodeLimit;
+
+		final BoardCompact board;
+
+		final StateStore states;
+
+		final PlayerRegion region;
+
+		final BucketQueue open = new BucketQueue(BucketQueue.ETieBreak.LOWEST_H);
+
+		final MpscQueue<Batch> inbox = new MpscQueue<Batch>();
+
+		/**
+		 * [worker] batch being filled for that worker.
+		 */
+		final Batch[] outgoing;
+
+		int[] g;
+
+		int[] h;
+
+		/**
+		 * Global id of the parent, see {@link HDAStarEngine#id(int, int)}.
+		 */
+		long[] parent;
+
+		int[] code;
+
+		boolean[] closed;
+
+		int[] scratchPushes = new int[64];
+
+		boolean idle = false;
+
+		int expanded = 0;
+
+		Worker(int index, BoardCompact start, int nodeLimit) {
+			this.index = index;
+			this.nodeLimit = nodeLimit;
+			board = start.clone();
+			states = new StateStore(DEFAULT_CAPACITY);
+			states.reset(board);
+			region = new PlayerRegion(states.cells);
+			outgoing = new Batch[threadCount];
+			g = new int[DEFAULT_CAPACITY];
+			h = new int[DEFAULT_CAPACITY];
+			parent = new long[DEFAULT_CAPACITY];
+			code = new int[DEFAULT_CAPACITY];
+			closed = new boolean[DEFAULT_CAPACITY];
+		}
+
+		@Override
+		public void run() {
+			try {
+				search();
+			} catch (Throwable t) {
+				failure = t;
+				stopRequested = true;
+			}
+		}
+
+		private void search() {
+			int sinceFlush = 0;
+			while (!stopRequested) {
+				Batch batch;
+				while ((batch = inbox.poll()) != null) {
+					if (idle) {
+						// become busy before the batch stops being counted
+						idle = false;
+						work.incrementAndGet();
+					}
+					receive(batch);
+					work.decrementAndGet();
+				}
+
+				if (!open.isEmpty() && open.peekF() < bestG) {
+					int node = open.poll();
+					if (closed[node]) continue; // stale entry
+					closed[node] = true;
+					expand(node);
+					if (++sinceFlush == FLUSH_EXPANSIONS) {
+						flushAll();
+						sinceFlush = 0;
+					}
+					continue;
+				}
+
+				// NOTHING TO EXPAND
+				flushAll();
+				sinceFlush = 0;
+				if (!idle) {
+					idle = true;
+					if (work.decrementAndGet() == 0) return;
+				} else
+				if (work.get() == 0) return;
+				Thread.yield();
+			}
+		}
+
+		private void expand(int node) {
+			states.load(board, node);
+			if (board.isVictory()) {
+				offerSolution(g[node], id(index, node));
+				return;
+			}
+			++expanded;
+
+			// COLLECT FIRST, region is recomputed for every successor
+			region.compute(board);
+			int count = 0;
+			int[] boardEntities = states.boardEntities();
+			for (int i = 1; i < boardEntities.length; ++i) {
+				int box = states.cells.indexOfCell(boardEntities[i]);
+				for (EDirection dir : EDirection.arrows()) {
+					int push = PushPlan.code(box, dir);
+					if (!PushPlan.isPossible(board, region, push)) continue;
+					if (count == scratchPushes.length) scratchPushes = Arrays.copyOf(scratchPushes, count * 2);
+					scratchPushes[count++] = push;
+				}
+			}
+
+			int newG = g[node] + 1;
+			long nodeId = id(index, node);
+
+			for (int i = 0; i < count; ++i) {
+				int push = scratchPushes[i];
+
+				board.mark();
+				PushPlan.perform(board, states.cells, push);
+
+				if (pruning == null || !pruning.prunePush(board, PushPlan.boxTarget(states.cells, push))) {
+					int newH = heuristic.estimate(board);
+					if (newG + newH < bestG) {
+						long hash = states.encode(board, region);
+						int owner = owner(hash);
+						if (owner == index) relax(hash, newG, newH, nodeId, push);
+						else send(owner, hash, newG, newH, nodeId, push);
+					}
+				}
+
+				board.undo();
+			}
+		}
+
+		/**
+		 * Adds the state whose key is in {@link StateStore#scratch} or lowers its g.
+		 */
+		void relax(long hash, int newG, int newH, long parentId, int push) {
+			int other = states.find(hash);
+
+			if (other == NONE) {
+				if (states.size() >= nodeLimit) {
+					stopRequested = true;
+					return;
+				}
+				int state = addState(hash);
+				g[state] = newG;
+				h[state] = newH;
+				parent[state] = parentId;
+				code[state] = push;
+				closed[state] = false;
+				open.push(state, newG + newH, newH);
+			} else
+			if (newG < g[other]) {
+				g[other] = newG;
+				parent[other] = parentId;
+				code[other] = push;
+				closed[other] = false;
+				open.push(other, newG + h[other], h[other]);
+			}
+		}
+
+		private int addState(long hash) {
+			int state = states.add(hash);
+			if (state == g.length) {
+				int capacity = states.capacity();
+				g = Arrays.copyOf(g, capacity);
+				h = Arrays.copyOf(h, capacity);
+				parent = Arrays.copyOf(parent, capacity);
+				code = Arrays.copyOf(code, capacity);
+				closed = Arrays.copyOf(closed, capacity);
+			}
+			return state;
+		}
+
+		private void receive(Batch batch) {
+			int keyWords = states.keyWords;
+			for (int i = 0; i < batch.count; ++i) {
+				if (batch.g[i] + batch.h[i] >= bestG) continue;
+				System.arraycopy(batch.keys, i * keyWords, states.scratch, 0, keyWords);
+				relax(batch.hashes[i], batch.g[i], batch.h[i], batch.parent[i], batch.code[i]);
+			}
+		}
+
+		/**
+		 * Appends the state whose key is in {@link StateStore#scratch} to the batch for the 'owner'.
+		 */
+		private void send(int owner, long hash, int newG, int newH, long parentId, int push) {
+			Batch batch = outgoing[owner];
+			if (batch == null) batch = outgoing[owner] = new Batch(states.keyWords);
+			int i = batch.count++;
+			System.arraycopy(states.scratch, 0, batch.keys, i * states.keyWords, states.keyWords);
+			batch.hashes[i] = hash;
+			batch.g[i] = newG;
+			batch.h[i] = newH;
+			batch.parent[i] = parentId;
+			batch.code[i] = push;
+			if (batch.count == BATCH_SIZE) flush(owner);
+		}
+
+		private void flush(int owner) {
+			Batch batch = outgoing[owner];
+			if (batch == null || batch.count == 0) return;
+			// counted before it becomes visible to the receiver
+			work.incrementAndGet();
+			workers[owner].inbox.offer(batch);
+			outgoing[owner] = null;
+		}
+
+		private void flushAll() {
+			for (int owner = 0; owner < outgoing.length; ++owner) {
+				flush(owner);
+			}
+		}
+
+	}
+
+	// =====
+	// STATS
+	// =====
+
+	/**
+	 * Number of states stored by the last search (all workers).
+	 * @return
+	 */
+	public int getNodeCount() {
+		int result = 0;
+		if (workers != null) for (Worker worker : workers) result += worker.states.size();
+		return result;
+	}
+
+	/**
+	 * Number of states expanded by the last search (all workers).
+	 * @return
+	 */
+	public int getExpandedNodes() {
+		int result = 0;
+		if (workers != null) for (Worker worker : workers) result += worker.expanded;
+		return result;
+	}
+
+	/**
+	 * Number of pushes of the plan found by the last search, Integer.MAX_VALUE if none.
+	 * @return
+	 */
+	public int getPushes() {
+		return bestG;
+	}
+
+	public int getThreads() {
+		return threadCount;
+	}
+
+}
@@ -0,0 +1,328 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import game.actions.EDirection;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.Zobrist;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.minimal.StateCanonical;
+
+/**
+ * IDA* over push-level states: a node is the box configuration plus the player region ({@link PlayerRegion}), a successor is any push
+ * the player can walk to, every push costs 1. With an admissible {@link IHeuristic} (lower bound on the number of pushes) the solution is push-optimal.
+ * <br/>
+ * The depth-first search keeps an explicit stack of push codes ({@link PushPlan#code(int, EDirection)}) and performs them in place on a single board
+ * ({@link BoardCompact#mark()} / {@link BoardCompact#undo()}). Successors of every node are ordered by their heuristic value; the first one
+ * exceeding the threshold cuts the rest. A fixed-size {@link TranspositionTable} cuts transpositions and cycles within an iteration.
+ * Memory is therefore the table plus O(depth * branching), whatever the length of the search; walks are materialized by
+ * {@link PushPlan#toDirections(BoardCompact, CellIndex, int[], int)} only for the final plan.
+ * <br/>
+ * Not thread-safe, except for {@link #stop()}.
+ */
+public class IDAStarEngine {
+
+	public static final long DEFAULT_TABLE_BYTES = 64L * 1024 * 1024;
+
+	private IHeuristic heuristic = IHeuristic.ZERO;
+
+	private IPruning pruning = null;
+
+	private boolean corralPruning = false;
+
+	private final TranspositionTable table;
+
+	private volatile boolean stopRequested = false;
+
+	// =====
+	// LEVEL
+	// =====
+
+	private BoardCompact board;
+
+	private CellIndex cells;
+
+	private PlayerRegion region;
+
+	/**
+	 * With {@link #setCorralPruning(boolean)} only, otherwise null.
+	 */
+	private CorralAnalyzer corrals;
+
+	private Zobrist zobrist;
+
+	// =====
+	// STACK
+	// =====
+
+	/**
+	 * Push done at depth d (leading to depth d + 1).
+	 */
+	private int[] path = new int[64];
+
+	/**
+	 * Successors of all frames on the stack: codes and heuristic values; frame d owns [frameStart[d]; frameEnd[d]).
+	 */
+	private int[] successorCodes = new int[256];
+
+	private int[] successorH = new int[256];
+
+	private int[] frameStart = new int[64];
+
+	private int[] frameNext = new int[64];
+
+	private int[] frameEnd = new int[64];
+
+	// =====
+	// STATS
+	// =====
+
+	private long searchedNodes;
+
+	private int iterations;
+
+	private int threshold;
+
+	public IDAStarEngine() {
+		this(DEFAULT_TABLE_BYTES);
+	}
+
+	/**
+	 * @param tableBytes memory of the {@link TranspositionTable}
+	 */
+	public IDAStarEngine(long tableBytes) {
+		table = new TranspositionTable(tableBytes);
+	}
+
+	/**
+	 * Must estimate the number of pushes needed, not steps, for the plan to be push-optimal.
+	 * @param heuristic
+	 * @return
+	 */
+	public IDAStarEngine setHeuristic(IHeuristic heuristic) {
+		this.heuristic = heuristic == null ? IHeuristic.ZERO : heuristic;
+		return this;
+	}
+
+	/**
+	 * @param pruning called after every push; null == do not prune
+	 * @return
+	 */
+	public IDAStarEngine setPruning(IPruning pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * Searches just the pushes into a PI-corral if there is one and cuts corral deadlocks, see {@link CorralAnalyzer}.
+	 * Keeps the search push-optimal. Default false.
+	 * @param corralPruning
+	 * @return
+	 */
+	public IDAStarEngine setCorralPruning(boolean corralPruning) {
+		this.corralPruning = corralPruning;
+		return this;
+	}
+
+	/**
+	 * Makes the running {@link #search(BoardCompact)} return null as soon as possible; may be called from any thread.
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * Finds the push-optimal solution of the 'start' board (given an admissible heuristic).
+	 * @param start not altered
+	 * @return directions of the solution (walks included) or null if there is none or the search was stopped
+	 */
+	public List<EDirection> search(BoardCompact start) {
+		stopRequested = false;
+		searchedNodes = 0;
+		iterations = 0;
+
+		board = start.clone();
+		cells = new CellIndex(board);
+		region = new PlayerRegion(cells);
+		corrals = corralPruning ? new CorralAnalyzer(board, cells) : null;
+		zobrist = Zobrist.forLevel(board.width(), board.height());
+
+		if (board.isVictory()) return new ArrayList<EDirection>();
+
+		threshold = heuristic.estimate(board);
+		while (!stopRequested) {
+			++iterations;
+			table.nextIteration();
+			int next = iterate();
+			if (next < 0) return PushPlan.toDirections(start, cells, path, -next - 1);
+			if (next == Integer.MAX_VALUE) return null; // whole space searched
+			threshold = next;
+		}
+		return null;
+	}
+
+	/**
+	 * One depth-first pass bounded by {@link #threshold}.
+	 * @return -(pushes + 1) if solved (the plan is in {@link #path}), otherwise the lowest f that exceeded the threshold
+	 */
+	private int iterate() {
+		int nextThreshold = Integer.MAX_VALUE;
+
+		region.compute(board);
+		table.probeAndStore(key(), 0);
+		generate(0, 0);
+
+		int depth = 0;
+		while (depth >= 0) {
+			if (stopRequested) {
+				unwind(depth);
+				return Integer.MAX_VALUE - 1;
+			}
+
+			if (frameNext[depth] == frameEnd[depth]) {
+				// FRAME EXHAUSTED => BACKTRACK
+				if (depth == 0) break;
+				--depth;
+				board.undo();
+				continue;
+			}
+
+			int i = frameNext[depth]++;
+			int f = depth + 1 + successorH[i];
+			if (f > threshold) {
+				// successors are ordered by h => all following exceed the threshold as well
+				if (f < nextThreshold) nextThreshold = f;
+				frameNext[depth] = frameEnd[depth];
+				continue;
+			}
+
+			int code = successorCodes[i];
+			board.mark();
+			PushPlan.perform(board, cells, code);
+			region.compute(board);
+			if (table.probeAndStore(key(), depth + 1)) {
+				board.undo();
+				continue;
+			}
+
+			++searchedNodes;
+			ensureDepth(depth + 1);
+			path[depth] = code;
+			++depth;
+
+			if (board.isVictory()) {
+				unwind(depth);
+				return -(depth + 1);
+			}
+
+			generate(depth, frameEnd[depth - 1]);
+		}
+
+		return nextThreshold;
+	}
+
+	/**
+	 * Undoes all pushes on the stack.
+	 */
+	private void unwind(int depth) {
+		for (int i = 0; i < depth; ++i) {
+			board.undo();
+		}
+	}
+
+	/**
+	 * State key: boxes + the canonical player position (smallest cell of the region); {@link #region} must be computed.
+	 */
+	private long key() {
+		return StateCanonical.zobrist(board, region, zobrist);
+	}
+
+	/**
+	 * Fills the frame of 'depth' with the pushes possible on the {@link #board} (whose {@link #region} is computed), sorted by h.
+	 */
+	private void generate(int depth, int from) {
+		int count = from;
+		boolean alive = corrals == null || corrals.analyze(board, region);
+		for (int box = 0; alive && box < cells.size(); ++box) {
+			if (!CTile.isSomeBox(board.tileAt(cells.boardCell(box)))) continue;
+			for (EDirection dir : EDirection.arrows()) {
+				int code = PushPlan.code(box, dir);
+				if (!PushPlan.isPossible(board, region, code)) continue;
+				if (corrals != null && !corrals.isPushAllowed(code)) continue;
+
+				board.mark();
+				PushPlan.perform(board, cells, code);
+				if (pruning != null && pruning.prunePush(board, PushPlan.boxTarget(cells, code))) {
+					board.undo();
+					continue;
+				}
+				int h = heuristic.estimate(board);
+				board.undo();
+
+				if (count == successorCodes.length) {
+					successorCodes = Arrays.copyOf(successorCodes, count * 2);
+					successorH = Arrays.copyOf(successorH, count * 2);
+				}
+
+				// INSERTION SORT BY h, STABLE
+				int i = count++;
+				while (i > from && successorH[i - 1] > h) {
+					successorCodes[i] = successorCodes[i - 1];
+					successorH[i] = successorH[i - 1];
+					--i;
+				}
+				successorCodes[i] = code;
+				successorH[i] = h;
+			}
+		}
+		frameStart[depth] = from;
+		frameNext[depth] = from;
+		frameEnd[depth] = count;
+	}
+
+	private void ensureDepth(int depth) {
+		if (depth < frameStart.length) return;
+		int length = frameStart.length * 2;
+		path = Arrays.copyOf(path, length);
+		frameStart = Arrays.copyOf(frameStart, length);
+		frameNext = Arrays.copyOf(frameNext, length);
+		frameEnd = Arrays.copyOf(frameEnd, length);
+	}
+
+	// =====
+	// STATS
+	// =====
+
+	/**
+	 * Nodes entered by the last search (all iterations).
+	 * @return
+	 */
+	public long getSearchedNodes() {
+		return searchedNodes;
+	}
+
+	/**
+	 * Number of thresholds tried by the last search.
+	 * @return
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Threshold of the last iteration == number of pushes of the solution if found.
+	 * @return
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+}
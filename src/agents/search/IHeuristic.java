@@ -0,0 +1,24 @@
+package agents.search;
+
+import game.board.compact.BoardCompact;
+
+/**
+ * Estimate of the cost still needed to solve the board, used by {@link AStarEngine}.
+ * <br/>
+ * For optimal solutions the estimate must not exceed the true cost (admissible); the engine never alters the 'board'
+ * while the heuristic runs, nor should the heuristic.
+ */
+public interface IHeuristic {
+
+	/**
+	 * Heuristic that always returns 0; turns {@link AStarEngine} into uniform-cost search.
+	 */
+	public static final IHeuristic ZERO = board -> 0;
+
+	/**
+	 * @param board state to evaluate
+	 * @return non-negative estimate of the remaining cost
+	 */
+	public int estimate(BoardCompact board);
+
+}
@@ -0,0 +1,29 @@
+package agents.search;
+
+import game.board.compact.BoardCompact;
+
+/**
+ * Filter of successor states, used by {@link AStarEngine}, e.g., dead-square or deadlock detection.
+ */
+public interface IPruning {
+
+	/**
+	 * Called with the successor already performed on the 'board' (in place, see {@link BoardCompact#mark()}); must not alter the 'board'.
+	 * Engines that know which box was pushed call it for the start state only, see {@link #prunePush(BoardCompact, int)}.
+	 * @param board the successor state
+	 * @return true to drop the successor
+	 */
+	public boolean prune(BoardCompact board);
+
+	/**
+	 * Called instead of {@link #prune(BoardCompact)} by engines that know the successor is a single push of the box now standing
+	 * at 'boxCell'; the predecessor was not pruned, so implementations may check just that box (O(1) instead of scanning the board).
+	 * @param board the successor state
+	 * @param boxCell {@link BoardCompact#cell(int, int)} of the pushed box
+	 * @return true to drop the successor
+	 */
+	public default boolean prunePush(BoardCompact board, int boxCell) {
+		return prune(board);
+	}
+
+}
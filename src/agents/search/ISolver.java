@@ -0,0 +1,35 @@
+package agents.search;
+
+import java.util.List;
+
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+
+/**
+ * A configured search engine that can be raced against others, see {@link agents.PortfolioAgent}.
+ */
+public interface ISolver {
+
+	public String getName();
+
+	/**
+	 * Solves the 'board'; runs on its own thread, concurrently with other solvers sharing the same (read-only) 'tables'.
+	 * @param board not altered
+	 * @param tables of the level of the 'board'
+	 * @return directions of the solution or null if there is none (within the limits of the solver) or it was stopped
+	 */
+	public List<EDirection> solve(BoardCompact board, LevelTables tables);
+
+	/**
+	 * Time the next {@link #solve(BoardCompact, LevelTables)} should return by with the best plan it has; solvers that cannot use it ignore it.
+	 * @param deadlineMillis System.currentTimeMillis(); Long.MAX_VALUE == no deadline
+	 */
+	public default void deadline(long deadlineMillis) {
+	}
+
+	/**
+	 * Makes the running {@link #solve(BoardCompact, LevelTables)} return as soon as possible; may be called from any thread.
+	 */
+	public void stop();
+
+}
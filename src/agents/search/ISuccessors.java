@@ -0,0 +1,37 @@
+package agents.search;
+
+import java.util.List;
+
+import game.actions.compact.CAction;
+import game.actions.compact.CMove;
+import game.actions.compact.CPush;
+import game.board.compact.BoardCompact;
+
+/**
+ * Generates actions applicable in a state, used by {@link AStarEngine}.
+ * <br/>
+ * Reuse action instances (as {@link CMove#getActions()} and {@link CPush#getActions()} do); the engine stores every distinct instance once
+ * and refers to it by a number.
+ */
+public interface ISuccessors {
+
+	/**
+	 * All possible {@link CMove}s and {@link CPush}es, i.e., the plain step-by-step search.
+	 */
+	public static final ISuccessors MOVES_AND_PUSHES = (board, actions) -> {
+		for (CMove move : CMove.getActions()) {
+			if (move.isPossible(board)) actions.add(move);
+		}
+		for (CPush push : CPush.getActions()) {
+			if (push.isPossible(board)) actions.add(push);
+		}
+	};
+
+	/**
+	 * Adds actions applicable in the 'board' into 'actions' (which is empty upon the call); must not alter the 'board'.
+	 * @param board
+	 * @param actions
+	 */
+	public void collect(BoardCompact board, List<CAction> actions);
+
+}
@@ -0,0 +1,97 @@
+package agents.search;
+
+import game.board.DeadSquares;
+import game.board.DeadlockDetector;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.compact.LevelStatic;
+
+/**
+ * Read-only per-level preprocessing shared by agents and engines: Manhattan distance of every cell to the nearest goal,
+ * {@link DeadSquares} and a {@link DeadlockDetector} over them.
+ * <br/>
+ * Immutable once built, hence safe to use from any number of search threads at once; {@link #heuristic(BoardCompact)}
+ * fits {@link IHeuristic}, {@link #deadlockPruning} fits {@link IPruning} and checks just the pushed box in engines calling
+ * {@link IPruning#prunePush(BoardCompact, int)}.
+ * <br/>
+ * {@link #forLevel(BoardCompact)} keeps the tables of the last level, so engines racing on the same level build them once.
+ */
+public final class LevelTables {
+
+	private static volatile LevelTables last = null;
+
+	public final LevelStatic level;
+
+	/**
+	 * Shared with all other users of the level, see {@link DeadSquares#forLevel(BoardCompact)}.
+	 */
+	public final DeadSquares deadSquares;
+
+	public final DeadlockDetector deadlocks;
+
+	/**
+	 * {@link IPruning} by {@link #deadlocks}: local checks of the pushed box and the goal matching per push, whole board otherwise.
+	 */
+	public final IPruning deadlockPruning;
+
+	/**
+	 * [cell] Manhattan distance to the nearest goal.
+	 */
+	private final int[] goalDistance;
+
+	/**
+	 * Tables of the level of the 'board'; reuses the ones built last if the level is the same. Thread-safe.
+	 * @param board
+	 * @return
+	 */
+	public static LevelTables forLevel(BoardCompact board) {
+		LevelTables result = last;
+		if (result != null && result.level.isLevelOf(board)) return result;
+		result = new LevelTables(board);
+		last = result;
+		return result;
+	}
+
+	public LevelTables(BoardCompact board) {
+		level = new LevelStatic(board);
+		deadSquares = DeadSquares.forLevel(board);
+		deadlocks = new DeadlockDetector(deadSquares);
+		deadlockPruning = new IPruning() {
+			@Override
+			public boolean prune(BoardCompact board) {
+				return deadlocks.isDeadlocked(board);
+			}
+
+			@Override
+			public boolean prunePush(BoardCompact board, int boxCell) {
+				return deadlocks.isDeadlocked(board, boxCell);
+			}
+		};
+		int cells = level.cells;
+		goalDistance = new int[cells];
+		int[] goals = level.goalCells();
+		for (int cell = 0; cell < cells; ++cell) {
+			int x = level.cellX(cell);
+			int y = level.cellY(cell);
+			int best = Integer.MAX_VALUE;
+			for (int goal : goals) {
+				best = Math.min(best, Math.abs(level.cellX(goal) - x) + Math.abs(level.cellY(goal) - y));
+			}
+			goalDistance[cell] = best;
+		}
+	}
+
+	/**
+	 * Sum of Manhattan distances of the boxes to their nearest goals; admissible for pushes.
+	 * @param board
+	 * @return
+	 */
+	public int heuristic(BoardCompact board) {
+		int h = 0;
+		for (int cell = 0; cell < board.tiles.length; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell))) h += goalDistance[cell];
+		}
+		return h;
+	}
+
+}
@@ -0,0 +1,71 @@
+package agents.search;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free multi-producer single-consumer queue (linked list with an atomic tail).
+ * <br/>
+ * {@link #offer(Object)} may be called from any thread: one getAndSet of the tail, no locks, no retries.
+ * {@link #poll()} must be called from the owning (consumer) thread only.
+ * <br/>
+ * An offer is published when its link is written; until then {@link #poll()} may see the queue as empty even though the item
+ * is already accounted for by the producer, callers must not treat "empty" as "nothing in flight" (see {@link HDAStarEngine}).
+ */
+public class MpscQueue<T> {
+
+	private static class Node<T> {
+
+		T item;
+
+		volatile Node<T> next;
+
+		Node(T item) {
+			this.item = item;
+		}
+
+	}
+
+	/**
+	 * Consumer side; the node holds no item, items are in the nodes after it.
+	 */
+	private Node<T> head;
+
+	private final AtomicReference<Node<T>> tail;
+
+	public MpscQueue() {
+		head = new Node<T>(null);
+		tail = new AtomicReference<Node<T>>(head);
+	}
+
+	/**
+	 * Adds the 'item'; any thread.
+	 * @param item not null
+	 */
+	public void offer(T item) {
+		Node<T> node = new Node<T>(item);
+		Node<T> previous = tail.getAndSet(node);
+		previous.next = node;
+	}
+
+	/**
+	 * Removes the oldest published item; consumer thread only.
+	 * @return null if there is none
+	 */
+	public T poll() {
+		Node<T> next = head.next;
+		if (next == null) return null;
+		T item = next.item;
+		next.item = null;
+		head = next;
+		return item;
+	}
+
+	/**
+	 * Whether there is no published item; consumer thread only.
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return head.next == null;
+	}
+
+}
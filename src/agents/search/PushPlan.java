@@ -0,0 +1,202 @@
+package agents.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import game.actions.EDirection;
+import game.actions.compact.CMove;
+import game.actions.compact.CPull;
+import game.actions.compact.CPush;
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * Push-level plans: a push is coded as a single int (box {@link CellIndex} number and push direction), searches keep just these codes
+ * and {@link #toDirections(BoardCompact, CellIndex, int[], int)} walks the player between the pushes (shortest walks) once the plan is final.
+ * <br/>
+ * Backward searches code pulls the same way (box and pull direction), see {@link #performPull(BoardCompact, CellIndex, int)}
+ * and {@link #pushOfPull(CellIndex, int)}.
+ */
+public final class PushPlan {
+
+	private PushPlan() {
+	}
+
+	/**
+	 * @param box {@link CellIndex} number of the box to push
+	 * @param dir push direction
+	 * @return
+	 */
+	public static int code(int box, EDirection dir) {
+		return (box << 2) | dir.index;
+	}
+
+	/**
+	 * {@link CellIndex} number of the pushed box.
+	 * @param code
+	 * @return
+	 */
+	public static int box(int code) {
+		return code >>> 2;
+	}
+
+	public static EDirection dir(int code) {
+		return EDirection.arrows()[code & 3];
+	}
+
+	/**
+	 * Board cell ({@link BoardCompact#cell(int, int)}) the box of the push 'code' ends at.
+	 * @param cells
+	 * @param code
+	 * @return
+	 */
+	public static int boxTarget(CellIndex cells, int code) {
+		return cells.boardCell(cells.neighbour(box(code), dir(code)));
+	}
+
+	/**
+	 * Whether the push can be done right now: the player can walk behind the box and the box has where to go.
+	 * @param board
+	 * @param region computed for the 'board'
+	 * @param code
+	 * @return
+	 */
+	public static boolean isPossible(BoardCompact board, PlayerRegion region, int code) {
+		CellIndex cells = region.getCells();
+		EDirection dir = dir(code);
+		int box = box(code);
+		int behind = cells.neighbour(box, dir.opposite());
+		if (behind == CellIndex.NONE || !region.isReachable(behind)) return false;
+		int target = cells.neighbour(box, dir);
+		if (target == CellIndex.NONE) return false;
+		return !CTile.isSomeBox(board.tileAt(cells.boardCell(target)));
+	}
+
+	/**
+	 * Performs the push "by teleport": the box moves one cell in the push direction and the player ends up where the box was.
+	 * Goes through {@link BoardCompact#moveBox(int, int, int, int)} and {@link BoardCompact#movePlayer(int, int, int, int)}, hence
+	 * it can be undone by {@link BoardCompact#undo()}.
+	 * @param board
+	 * @param cells
+	 * @param code
+	 */
+	public static void perform(BoardCompact board, CellIndex cells, int code) {
+		EDirection dir = dir(code);
+		int box = box(code);
+		int bx = cells.x(box);
+		int by = cells.y(box);
+		// the player may stand where the box goes => teleport behind the box first
+		if (board.playerX != bx - dir.dX || board.playerY != by - dir.dY) {
+			board.movePlayer(board.playerX, board.playerY, bx - dir.dX, by - dir.dY);
+		}
+		board.moveBox(bx, by, bx + dir.dX, by + dir.dY);
+		board.movePlayer(board.playerX, board.playerY, bx, by);
+	}
+
+	/**
+	 * Whether the pull coded as {@link #code(int, EDirection)} of (box, pull direction) can be done right now: the player can walk
+	 * to the cell next to the box in the pull direction and the cell after that has no box, see {@link CPull}.
+	 * @param board
+	 * @param region computed for the 'board'
+	 * @param code
+	 * @return
+	 */
+	public static boolean isPullPossible(BoardCompact board, PlayerRegion region, int code) {
+		CellIndex cells = region.getCells();
+		EDirection dir = dir(code);
+		int target = cells.neighbour(box(code), dir);
+		if (target == CellIndex.NONE || !region.isReachable(target)) return false;
+		int player = cells.neighbour(target, dir);
+		if (player == CellIndex.NONE) return false;
+		return !CTile.isSomeBox(board.tileAt(cells.boardCell(player)));
+	}
+
+	/**
+	 * Performs the pull "by teleport": the player is moved next to the box and does {@link CPull}; the box ends up one cell
+	 * in the pull direction, the player one cell further. Can be undone by {@link BoardCompact#undo()}.
+	 * @param board
+	 * @param cells
+	 * @param code
+	 */
+	public static void performPull(BoardCompact board, CellIndex cells, int code) {
+		EDirection dir = dir(code);
+		int target = cells.neighbour(box(code), dir);
+		int tx = cells.x(target);
+		int ty = cells.y(target);
+		if (board.playerX != tx || board.playerY != ty) {
+			board.movePlayer(board.playerX, board.playerY, tx, ty);
+		}
+		CPull.getAction(dir).perform(board);
+	}
+
+	/**
+	 * The push undoing the pull 'code', i.e., the forward move of a backward (pulling) search.
+	 * @param cells
+	 * @param code
+	 * @return
+	 */
+	public static int pushOfPull(CellIndex cells, int code) {
+		EDirection dir = dir(code);
+		return code(cells.neighbour(box(code), dir), dir.opposite());
+	}
+
+	/**
+	 * Expands 'count' push codes into the full list of directions, inserting the shortest walk before every push.
+	 * @param start state the plan starts from; not altered
+	 * @param cells
+	 * @param codes
+	 * @param count
+	 * @return
+	 */
+	public static List<EDirection> toDirections(BoardCompact start, CellIndex cells, int[] codes, int count) {
+		BoardCompact board = start.clone();
+		List<EDirection> result = new ArrayList<EDirection>();
+
+		int[] parentDir = new int[cells.size()];
+		int[] queue = new int[cells.size()];
+
+		for (int i = 0; i < count; ++i) {
+			EDirection pushDir = dir(codes[i]);
+			int behind = cells.neighbour(box(codes[i]), pushDir.opposite());
+			int from = result.size();
+
+			// BFS FROM THE PLAYER TO THE CELL BEHIND THE BOX
+			Arrays.fill(parentDir, -2);
+			int player = cells.indexOf(board.playerX, board.playerY);
+			parentDir[player] = -1;
+			queue[0] = player;
+			int head = 0, tail = 1;
+			while (head < tail && parentDir[behind] == -2) {
+				int cell = queue[head++];
+				for (EDirection dir : EDirection.arrows()) {
+					int next = cells.neighbour(cell, dir);
+					if (next == CellIndex.NONE || parentDir[next] != -2) continue;
+					if (CTile.isSomeBox(board.tileAt(cells.boardCell(next)))) continue;
+					parentDir[next] = dir.index;
+					queue[tail++] = next;
+				}
+			}
+			if (parentDir[behind] == -2) throw new RuntimeException("Invalid plan, push #" + i + " is not reachable.");
+
+			for (int cell = behind; parentDir[cell] != -1; ) {
+				EDirection dir = EDirection.arrows()[parentDir[cell]];
+				result.add(from, dir);
+				cell = cells.neighbour(cell, dir.opposite());
+			}
+			for (int j = from; j < result.size(); ++j) {
+				CMove.getAction(result.get(j)).perform(board);
+			}
+
+			CPush push = CPush.getAction(pushDir);
+			if (!push.isPossible(board)) throw new RuntimeException("Invalid plan, push #" + i + " is not possible.");
+			push.perform(board);
+			result.add(pushDir);
+		}
+
+		return result;
+	}
+
+}
@@ -0,0 +1,360 @@
+package agents.search;
+
+import java.util.Arrays;
+
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.minimal.PackedState;
+import game.board.minimal.StateCanonical;
+import game.board.oop.EEntity;
+
+/**
+ * Append-only store of packed search states shared by the engines of this package: state n has its key (same layout as {@link PackedState#getWords()})
+ * in {@link #keys}[n * keyWords ...] and its hash in {@link #hashes}[n]; an open-addressing index over the state numbers finds duplicates.
+ * <br/>
+ * Also moves a working {@link BoardCompact} between stored states: {@link #encode(BoardCompact, int)} packs the board into {@link #scratch},
+ * {@link #load(BoardCompact, int)} re-creates a stored state on the board (O(boxes), no allocation).
+ * <br/>
+ * With {@link #setOffHeap(long)} the keys and hashes live in a {@link StateTable} outside the Java heap instead (state n's slot is {@link #slots}[n],
+ * the slot's id is n, see {@link StateTable#withIds(int, long)}), so the bulk of a big search costs the garbage collector nothing. The table starts small and is rebuilt twice
+ * as big when full, up to the given size, see {@link #isFull()}.
+ * <br/>
+ * Cannot be used with multicolored boxes. Not thread-safe.
+ */
+class StateStore {
+
+	public static final int NONE = -1;
+
+	/**
+	 * First size of the off-heap table.
+	 */
+	private static final long MIN_TABLE_BYTES = 1 << 20;
+
+	CellIndex cells;
+
+	int bits;
+
+	int keyWords;
+
+	long[] keys;
+
+	long[] hashes;
+
+	/**
+	 * Key built by {@link #encode(BoardCompact, int)}.
+	 */
+	long[] scratch;
+
+	/**
+	 * state + 1, 0 == empty; load <= 1/2.
+	 */
+	private int[] index;
+
+	private int indexMask;
+
+	private int size;
+
+	/**
+	 * Board cells of the entities on the working board after the last {@link #load(BoardCompact, int)} (or {@link #reset(BoardCompact)}); player first.
+	 */
+	private int[] boardEntities;
+
+	/**
+	 * Off-heap bytes, 0 == keys are kept in {@link #keys}.
+	 */
+	private long offHeapBytes = 0;
+
+	/**
+	 * Off-heap keys and hashes or null.
+	 */
+	private StateTable table;
+
+	/**
+	 * Bytes of the {@link #table}, at most {@link #offHeapBytes}.
+	 */
+	private long tableBytes;
+
+	/**
+	 * [state] slot of the {@link #table}.
+	 */
+	private int[] slots;
+
+	/**
+	 * Key read from the {@link #table}.
+	 */
+	private long[] tableKey;
+
+	/**
+	 * @param capacity power of two
+	 */
+	StateStore(int capacity) {
+		keys = new long[capacity];
+		hashes = new long[capacity];
+		index = new int[capacity * 2];
+		indexMask = index.length - 1;
+	}
+
+	/**
+	 * Keeps the keys in a {@link StateTable} of 'bytes' outside the Java heap from the next {@link #reset(BoardCompact)} on.
+	 * @param bytes 0 == on the heap
+	 */
+	void setOffHeap(long bytes) {
+		if (bytes < 0) throw new RuntimeException("Invalid off-heap bytes = " + bytes + ", must not be negative.");
+		if (bytes != offHeapBytes) table = null;
+		offHeapBytes = bytes;
+	}
+
+	/**
+	 * Whether no more states can be added; never with the keys on the heap.
+	 * @return
+	 */
+	boolean isFull() {
+		return table != null && table.isFull() && tableBytes == offHeapBytes;
+	}
+
+	/**
+	 * Prepares for the level of the 'board' (which becomes the working board) and forgets all states.
+	 * @param board
+	 */
+	void reset(BoardCompact board) {
+		reset(board, new CellIndex(board));
+	}
+
+	/**
+	 * Same as {@link #reset(BoardCompact)}, reusing the index of the level.
+	 * @param board
+	 * @param cells {@link CellIndex} of the level of the 'board'
+	 */
+	void reset(BoardCompact board, CellIndex cells) {
+		for (int cell = 0; cell < board.tiles.length; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell)) && !CTile.isBox(1, board.tileAt(cell))) {
+				throw new RuntimeException("Packed search states do not support multicolored boxes.");
+			}
+		}
+
+		this.cells = cells;
+		bits = PackedState.bitsFor(cells.size());
+		keyWords = PackedState.wordsFor(bits, board.boxCount);
+		scratch = new long[keyWords];
+
+		boardEntities = new int[board.boxCount + 1];
+		boardEntities[0] = board.playerCell();
+		int count = 1;
+		for (int i = 0; i < cells.size(); ++i) {
+			if (CTile.isSomeBox(board.tileAt(cells.boardCell(i)))) boardEntities[count++] = cells.boardCell(i);
+		}
+
+		if (offHeapBytes > 0) {
+			// keep the table while keys fit, shorter keys are padded with zeros
+			if (table == null || table.getKeyWords() < keyWords) {
+				table = null; // release the old buffers first
+				tableBytes = Math.min(offHeapBytes, Math.max(MIN_TABLE_BYTES, 2L * StateTable.idEntryBytes(keyWords)));
+				table = StateTable.withIds(keyWords, tableBytes);
+				slots = new int[hashes.length];
+			} else {
+				table.clear(slots, size);
+			}
+			scratch = new long[table.getKeyWords()];
+			tableKey = new long[table.getKeyWords()];
+		} else {
+			table = null;
+			if (keys.length < (long)hashes.length * keyWords) {
+				keys = new long[hashes.length * keyWords];
+			}
+			Arrays.fill(index, 0);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Number of states stored.
+	 * @return
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Number of states the arrays can hold before {@link #add()} grows them.
+	 * @return
+	 */
+	int capacity() {
+		return table == null ? hashes.length : slots.length;
+	}
+
+	/**
+	 * Board cells of the boxes on the working board, valid right after {@link #load(BoardCompact, int)}; [0] is the player.
+	 * @return
+	 */
+	int[] boardEntities() {
+		return boardEntities;
+	}
+
+	/**
+	 * Packs the state of the 'board' with the 'player' CellIndex number into {@link #scratch}.
+	 * CellIndex numbers follow the row-major order, so boxes are written ascending.
+	 * @return hash of the key
+	 */
+	long encode(BoardCompact board, int player) {
+		Arrays.fill(scratch, 0);
+		PackedState.write(scratch, 0, bits, 0, player);
+		int slot = 1;
+		for (int i = 0; i < cells.size(); ++i) {
+			if (CTile.isSomeBox(board.tileAt(cells.boardCell(i)))) {
+				PackedState.write(scratch, 0, bits, slot++, i);
+			}
+		}
+		return PackedState.hash(scratch, 0, keyWords);
+	}
+
+	/**
+	 * Packs the canonical state of the 'board' ({@link StateCanonical}, the player is its region) into {@link #scratch}; computes the 'region'.
+	 * @return hash of the key
+	 */
+	long encode(BoardCompact board, PlayerRegion region) {
+		Arrays.fill(scratch, 0);
+		StateCanonical.write(scratch, 0, bits, region, board);
+		return PackedState.hash(scratch, 0, keyWords);
+	}
+
+	/**
+	 * Packs the canonical state given by CellIndex numbers into {@link #scratch}.
+	 * @param region computed for the 'boxes'
+	 * @param boxes ascending, exactly as many as the level has boxes
+	 * @return hash of the key
+	 */
+	long encode(PlayerRegion region, int[] boxes) {
+		Arrays.fill(scratch, 0);
+		StateCanonical.write(scratch, 0, bits, region, boxes);
+		return PackedState.hash(scratch, 0, keyWords);
+	}
+
+	/**
+	 * State with the key in {@link #scratch} or {@link #NONE}.
+	 * @param hash of {@link #scratch}
+	 * @return
+	 */
+	int find(long hash) {
+		if (table != null) {
+			int slot = table.find(hash, scratch);
+			return slot == StateTable.NONE ? NONE : table.getId(slot);
+		}
+		int slot = (int)hash & indexMask;
+		int entry;
+		while ((entry = index[slot]) != 0) {
+			int state = entry - 1;
+			if (hashes[state] == hash && keyEquals(state)) return state;
+			slot = (slot + 1) & indexMask;
+		}
+		return NONE;
+	}
+
+	private boolean keyEquals(int state) {
+		int from = state * keyWords;
+		for (int i = 0; i < keyWords; ++i) {
+			if (keys[from + i] != scratch[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the key in {@link #scratch} (must not be present, see {@link #find(long)}) as a new state.
+	 * Throws RuntimeException if the store {@link #isFull()}.
+	 * @param hash of {@link #scratch}
+	 * @return number of the new state
+	 */
+	int add(long hash) {
+		if (table != null) {
+			if (size == slots.length) slots = Arrays.copyOf(slots, slots.length * 2);
+			if (table.isFull() && tableBytes < offHeapBytes) growTable();
+			slots[size] = table.add(hash, scratch, size);
+			return size++;
+		}
+		if (size == hashes.length) grow();
+		int state = size++;
+		System.arraycopy(scratch, 0, keys, state * keyWords, keyWords);
+		hashes[state] = hash;
+
+		int slot = (int)hash & indexMask;
+		while (index[slot] != 0) slot = (slot + 1) & indexMask;
+		index[slot] = state + 1;
+
+		return state;
+	}
+
+	private void growTable() {
+		StateTable old = table;
+		tableBytes = Math.min(offHeapBytes, tableBytes * 2);
+		table = StateTable.withIds(old.getKeyWords(), tableBytes);
+		long[] key = new long[old.getKeyWords()];
+		for (int state = 0; state < size; ++state) {
+			old.getKey(slots[state], key);
+			slots[state] = table.add(old.getHash(slots[state]), key, state);
+		}
+	}
+
+	private void grow() {
+		int capacity = hashes.length * 2;
+		keys = Arrays.copyOf(keys, capacity * keyWords);
+		hashes = Arrays.copyOf(hashes, capacity);
+
+		index = new int[index.length * 2];
+		indexMask = index.length - 1;
+		for (int state = 0; state < size; ++state) {
+			int slot = (int)hashes[state] & indexMask;
+			while (index[slot] != 0) slot = (slot + 1) & indexMask;
+			index[slot] = state + 1;
+		}
+	}
+
+	/**
+	 * CellIndex number of the player of the 'state'.
+	 * @param state
+	 * @return
+	 */
+	int player(int state) {
+		if (table != null) {
+			table.getKey(slots[state], tableKey);
+			return PackedState.read(tableKey, 0, bits, 0);
+		}
+		return PackedState.read(keys, state * keyWords, bits, 0);
+	}
+
+	/**
+	 * Re-creates the 'state' on the working 'board' (the one passed to {@link #reset(BoardCompact)}).
+	 * @param board
+	 * @param state
+	 */
+	void load(BoardCompact board, int state) {
+		int[] tiles = board.tiles;
+		for (int cell : boardEntities) {
+			tiles[cell] = (tiles[cell] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
+		}
+
+		long[] key = keys;
+		int from = state * keyWords;
+		if (table != null) {
+			table.getKey(slots[state], tableKey);
+			key = tableKey;
+			from = 0;
+		}
+		int player = cells.boardCell(PackedState.read(key, from, bits, 0));
+		tiles[player] = (tiles[player] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.PLAYER.getFlag();
+		boardEntities[0] = player;
+		board.playerX = board.cellX(player);
+		board.playerY = board.cellY(player);
+
+		int boxInPlace = 0;
+		for (int i = 1; i < boardEntities.length; ++i) {
+			int box = cells.boardCell(PackedState.read(key, from, bits, i));
+			tiles[box] = (tiles[box] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.BOX_1.getFlag();
+			if (CTile.forSomeBox(tiles[box])) ++boxInPlace;
+			boardEntities[i] = box;
+		}
+		board.boxInPlaceCount = boxInPlace;
+		board.invalidateHash();
+	}
+
+}
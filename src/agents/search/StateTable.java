@@ -0,0 +1,399 @@
+package agents.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import game.board.minimal.PackedState;
+
+/**
+ * Open-addressing (linear probing) table of search states living outside the Java heap, in direct {@link ByteBuffer}s.
+ * <br/>
+ * Every entry (slot) stores: the 64-bit hash of the state, its packed key ({@link PackedState#getWords()}), g-cost,
+ * slot of the parent state and the code of the last action (e.g. {@link game.actions.EDirection#index}, or anything up to 127).
+ * The table therefore costs {@link #entryBytes(int)} per state and nothing else; there are no per-state objects for the GC to trace.
+ * <br/>
+ * A table made by {@link #withIds(int, long)} stores a single int id instead of g-cost, parent and action ({@link #idEntryBytes(int)} per state),
+ * for searches that keep their node data on the heap and need the table only to map states to their numbers.
+ * <br/>
+ * The table never resizes: its capacity is given in bytes upfront and spread over as many buffers as needed
+ * (a single buffer cannot exceed 2GB). States cannot be removed, only {@link #clear()}ed all at once.
+ * <br/>
+ * All keys must have the same number of words, i.e., the table is meant for a single level.
+ * <br/>
+ * Not thread-safe.
+ */
+public class StateTable {
+
+	/**
+	 * Returned by {@link #find(long, long[])} if the state is not present; also the parent of root states.
+	 */
+	public static final int NONE = -1;
+
+	/**
+	 * Maximal fill of the table; linear probing degrades fast when close to full.
+	 */
+	public static final double MAX_LOAD = 0.9;
+
+	private static final int HASH_OFFSET = 0;
+
+	private static final int KEY_OFFSET = 8;
+
+	private final int keyWords;
+
+	private final int entryBytes;
+
+	/**
+	 * Entries hold an id instead of g-cost, parent and action, see {@link #withIds(int, long)}.
+	 */
+	private final boolean ids;
+
+	/**
+	 * Also the offset of the id.
+	 */
+	private final int gOffset;
+
+	private final int parentOffset;
+
+	private final int actionOffset;
+
+	private final ByteBuffer[] buffers;
+
+	/**
+	 * slot >>> bufferShift == index of the buffer the slot lives in.
+	 */
+	private final int bufferShift;
+
+	private final int bufferMask;
+
+	private final int capacity;
+
+	private final int maxSize;
+
+	private int size = 0;
+
+	/**
+	 * @param keyWords number of longs of every key, see {@link PackedState#wordsFor(int, int)}
+	 * @param capacityBytes off-heap memory to use; the table holds capacityBytes / {@link #entryBytes(int)} slots
+	 */
+	public StateTable(int keyWords, long capacityBytes) {
+		this(keyWords, capacityBytes, Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * Table storing an int id with every key instead of g-cost, parent and action; use {@link #add(long, long[], int)} and {@link #getId(int)}.
+	 * @param keyWords number of longs of every key, see {@link PackedState#wordsFor(int, int)}
+	 * @param capacityBytes off-heap memory to use; the table holds capacityBytes / {@link #idEntryBytes(int)} slots
+	 * @return
+	 */
+	public static StateTable withIds(int keyWords, long capacityBytes) {
+		return new StateTable(keyWords, capacityBytes, Integer.MAX_VALUE, true);
+	}
+
+	/**
+	 * @param keyWords
+	 * @param capacityBytes
+	 * @param maxBufferBytes upper bound on the size of a single buffer
+	 * @param ids see {@link #withIds(int, long)}
+	 */
+	StateTable(int keyWords, long capacityBytes, int maxBufferBytes, boolean ids) {
+		if (keyWords <= 0) throw new RuntimeException("Invalid keyWords = " + keyWords + ", must be positive.");
+		this.keyWords = keyWords;
+		this.ids = ids;
+		this.entryBytes = ids ? idEntryBytes(keyWords) : entryBytes(keyWords);
+		this.gOffset = KEY_OFFSET + 8 * keyWords;
+		this.parentOffset = gOffset + 4;
+		this.actionOffset = parentOffset + 4;
+
+		long slots = Math.min(capacityBytes / entryBytes, Integer.MAX_VALUE);
+		if (slots < 2) throw new RuntimeException("capacityBytes = " + capacityBytes + " too small, need at least " + (2 * entryBytes) + " bytes.");
+		this.capacity = (int)slots;
+		this.maxSize = (int)(capacity * MAX_LOAD);
+
+		int perBuffer = Integer.highestOneBit(Math.max(1, maxBufferBytes / entryBytes));
+		this.bufferShift = Integer.numberOfTrailingZeros(perBuffer);
+		this.bufferMask = perBuffer - 1;
+		int bufferCount = (int)((slots + perBuffer - 1) / perBuffer);
+		this.buffers = new ByteBuffer[bufferCount];
+		for (int i = 0; i < bufferCount; ++i) {
+			int entries = (int)Math.min(perBuffer, slots - (long)i * perBuffer);
+			buffers[i] = ByteBuffer.allocateDirect(entries * entryBytes).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/**
+	 * Bytes occupied by a single entry with the key of 'keyWords' longs.
+	 * @param keyWords
+	 * @return
+	 */
+	public static int entryBytes(int keyWords) {
+		// HASH + KEY + G + PARENT + ACTION, padded to 8 bytes
+		return (8 + 8 * keyWords + 4 + 4 + 1 + 7) & ~7;
+	}
+
+	/**
+	 * Bytes occupied by a single entry of a {@link #withIds(int, long)} table with the key of 'keyWords' longs.
+	 * @param keyWords
+	 * @return
+	 */
+	public static int idEntryBytes(int keyWords) {
+		// HASH + KEY + ID, padded to 8 bytes
+		return (8 + 8 * keyWords + 4 + 7) & ~7;
+	}
+
+	public int getKeyWords() {
+		return keyWords;
+	}
+
+	/**
+	 * Number of slots of the table.
+	 * @return
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of states stored.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether the table reached {@link #MAX_LOAD}; no more states can be added.
+	 * @return
+	 */
+	public boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * Off-heap bytes allocated by the table.
+	 * @return
+	 */
+	public long allocatedBytes() {
+		return (long)capacity * entryBytes;
+	}
+
+	private ByteBuffer buffer(int slot) {
+		return buffers[slot >>> bufferShift];
+	}
+
+	private int offset(int slot) {
+		return (slot & bufferMask) * entryBytes;
+	}
+
+	/**
+	 * Stored hashes are never 0, 0 marks an empty slot.
+	 * @param hash
+	 * @return
+	 */
+	private static long storedHash(long hash) {
+		return hash == 0 ? 1 : hash;
+	}
+
+	private int home(long hash) {
+		return (int)((hash >>> 1) % capacity);
+	}
+
+	private boolean keyEquals(ByteBuffer buffer, int offset, long[] words) {
+		for (int i = 0; i < keyWords; ++i) {
+			if (buffer.getLong(offset + KEY_OFFSET + 8 * i) != words[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Slot of the state or {@link #NONE}.
+	 * @param hash
+	 * @param words
+	 * @return
+	 */
+	public int find(long hash, long[] words) {
+		long stored = storedHash(hash);
+		int slot = home(hash);
+		while (true) {
+			ByteBuffer buffer = buffer(slot);
+			int offset = offset(slot);
+			long slotHash = buffer.getLong(offset + HASH_OFFSET);
+			if (slotHash == 0) return NONE;
+			if (slotHash == stored && keyEquals(buffer, offset, words)) return slot;
+			if (++slot == capacity) slot = 0;
+		}
+	}
+
+	/**
+	 * Slot of the state or {@link #NONE}.
+	 * @param state
+	 * @return
+	 */
+	public int find(PackedState state) {
+		return find(state.longHash(), state.getWords());
+	}
+
+	/**
+	 * Adds the state unless it is already present.
+	 * <br/>
+	 * Returns the slot of the new state, or -(slot + 1) if the state was already present (the entry is left intact then, see {@link #update(int, int, int, int)}).
+	 * <br/>
+	 * Throws RuntimeException if the table {@link #isFull()}.
+	 *
+	 * @param hash
+	 * @param words
+	 * @param g
+	 * @param parent
+	 * @param action
+	 * @return
+	 */
+	public int add(long hash, long[] words, int g, int parent, int action) {
+		checkSearchData();
+		int slot = insert(hash, words);
+		if (slot >= 0) update(slot, g, parent, action);
+		return slot;
+	}
+
+	/**
+	 * Adds the state with the 'id' unless it is already present; the same as {@link #add(long, long[], int, int, int)} otherwise.
+	 * Only for {@link #withIds(int, long)} tables.
+	 * @param hash
+	 * @param words
+	 * @param id
+	 * @return
+	 */
+	public int add(long hash, long[] words, int id) {
+		if (!ids) throw new RuntimeException("StateTable stores g-cost, parent and action, not ids; see StateTable.withIds().");
+		int slot = insert(hash, words);
+		if (slot >= 0) buffer(slot).putInt(offset(slot) + gOffset, id);
+		return slot;
+	}
+
+	/**
+	 * Writes the hash and key of a new state; see {@link #add(long, long[], int, int, int)} for the result.
+	 */
+	private int insert(long hash, long[] words) {
+		long stored = storedHash(hash);
+		int slot = home(hash);
+		while (true) {
+			ByteBuffer buffer = buffer(slot);
+			int offset = offset(slot);
+			long slotHash = buffer.getLong(offset + HASH_OFFSET);
+			if (slotHash == 0) {
+				if (size >= maxSize) throw new RuntimeException("StateTable is full, size = " + size + ", capacity = " + capacity + " slots (" + allocatedBytes() + " bytes).");
+				buffer.putLong(offset + HASH_OFFSET, stored);
+				for (int i = 0; i < keyWords; ++i) {
+					buffer.putLong(offset + KEY_OFFSET + 8 * i, words[i]);
+				}
+				++size;
+				return slot;
+			}
+			if (slotHash == stored && keyEquals(buffer, offset, words)) return -(slot + 1);
+			if (++slot == capacity) slot = 0;
+		}
+	}
+
+	private void checkSearchData() {
+		if (ids) throw new RuntimeException("StateTable stores ids, not g-cost, parent and action; see StateTable.withIds().");
+	}
+
+	/**
+	 * See {@link #add(long, long[], int, int, int)}.
+	 * @param state
+	 * @param g
+	 * @param parent
+	 * @param action
+	 * @return
+	 */
+	public int add(PackedState state, int g, int parent, int action) {
+		return add(state.longHash(), state.getWords(), g, parent, action);
+	}
+
+	/**
+	 * Rewrites the search data of the 'slot', e.g., when a cheaper path to the state was found.
+	 * @param slot
+	 * @param g
+	 * @param parent
+	 * @param action
+	 */
+	public void update(int slot, int g, int parent, int action) {
+		checkSearchData();
+		ByteBuffer buffer = buffer(slot);
+		int offset = offset(slot);
+		buffer.putInt(offset + gOffset, g);
+		buffer.putInt(offset + parentOffset, parent);
+		buffer.put(offset + actionOffset, (byte)action);
+	}
+
+	public int getG(int slot) {
+		checkSearchData();
+		return buffer(slot).getInt(offset(slot) + gOffset);
+	}
+
+	public int getParent(int slot) {
+		checkSearchData();
+		return buffer(slot).getInt(offset(slot) + parentOffset);
+	}
+
+	public int getAction(int slot) {
+		checkSearchData();
+		return buffer(slot).get(offset(slot) + actionOffset);
+	}
+
+	/**
+	 * Id of the state in the 'slot', see {@link #add(long, long[], int)}. Only for {@link #withIds(int, long)} tables.
+	 * @param slot
+	 * @return
+	 */
+	public int getId(int slot) {
+		if (!ids) throw new RuntimeException("StateTable stores g-cost, parent and action, not ids; see StateTable.withIds().");
+		return buffer(slot).getInt(offset(slot) + gOffset);
+	}
+
+	/**
+	 * Hash of the state in the 'slot' (as stored, i.e., 0 reads as 1).
+	 * @param slot
+	 * @return
+	 */
+	public long getHash(int slot) {
+		return buffer(slot).getLong(offset(slot) + HASH_OFFSET);
+	}
+
+	/**
+	 * Copies the key of the 'slot' into 'words' (of at least {@link #getKeyWords()} length).
+	 * @param slot
+	 * @param words
+	 */
+	public void getKey(int slot, long[] words) {
+		ByteBuffer buffer = buffer(slot);
+		int offset = offset(slot);
+		for (int i = 0; i < keyWords; ++i) {
+			words[i] = buffer.getLong(offset + KEY_OFFSET + 8 * i);
+		}
+	}
+
+	/**
+	 * Removes all states, given the slots of all of them; O(count) instead of the O(capacity) of {@link #clear()}.
+	 * @param slots every slot an add() returned since the last clear
+	 * @param count
+	 */
+	public void clear(int[] slots, int count) {
+		if (count != size) throw new RuntimeException("Got " + count + " slots to clear, but the table holds " + size + " states.");
+		for (int i = 0; i < count; ++i) {
+			buffer(slots[i]).putLong(offset(slots[i]) + HASH_OFFSET, 0);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Removes all states.
+	 */
+	public void clear() {
+		for (ByteBuffer buffer : buffers) {
+			for (int offset = 0; offset < buffer.capacity(); offset += entryBytes) {
+				buffer.putLong(offset + HASH_OFFSET, 0);
+			}
+		}
+		size = 0;
+	}
+
+}
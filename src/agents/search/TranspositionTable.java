@@ -0,0 +1,120 @@
+package agents.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table for depth-first searches (e.g. {@link IDAStarEngine}): remembers the lowest g with which
+ * a state (given by its 64-bit key) was entered during the current iteration.
+ * <br/>
+ * Entries are grouped into buckets of two. When a bucket is full the new state replaces an entry of an older iteration if there is one,
+ * otherwise the entry with the higher g; shallow entries cut off bigger subtrees and are kept. The table never grows, so the memory
+ * stays the same however long the search runs; forgotten states are only searched again, never lost.
+ * <br/>
+ * Not thread-safe.
+ */
+public class TranspositionTable {
+
+	/**
+	 * Bytes per entry: key + g + iteration.
+	 */
+	public static final int ENTRY_BYTES = 16;
+
+	private final long[] keys;
+
+	private final int[] gs;
+
+	/**
+	 * Iteration the entry was stored in; 0 == empty.
+	 */
+	private final int[] iterations;
+
+	private final int bucketMask;
+
+	private int iteration = 1;
+
+	private long stores = 0;
+
+	private long hits = 0;
+
+	/**
+	 * @param capacityBytes memory to use; rounded down to a power-of-two number of entries (at least 2)
+	 */
+	public TranspositionTable(long capacityBytes) {
+		long entries = Math.max(2, Math.min(capacityBytes / ENTRY_BYTES, 1 << 30));
+		int size = Integer.highestOneBit((int)entries);
+		keys = new long[size];
+		gs = new int[size];
+		iterations = new int[size];
+		bucketMask = (size >>> 1) - 1;
+	}
+
+	/**
+	 * Number of entries.
+	 * @return
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Forgets all states in O(1); call at the start of every iteration (threshold).
+	 */
+	public void nextIteration() {
+		if (++iteration == Integer.MAX_VALUE) {
+			Arrays.fill(iterations, 0);
+			iteration = 1;
+		}
+	}
+
+	/**
+	 * If the state 'key' was already entered with g' <= 'g' during this iteration, returns true (the caller should cut).
+	 * Otherwise records ('key', 'g') and returns false.
+	 * @param key
+	 * @param g
+	 * @return
+	 */
+	public boolean probeAndStore(long key, int g) {
+		int first = ((int)(key ^ (key >>> 32)) & bucketMask) << 1;
+		int second = first + 1;
+
+		if (iterations[first] == iteration && keys[first] == key) return cutOrLower(first, g);
+		if (iterations[second] == iteration && keys[second] == key) return cutOrLower(second, g);
+
+		int victim;
+		if (iterations[first] != iteration) victim = first;
+		else if (iterations[second] != iteration) victim = second;
+		else victim = gs[first] >= gs[second] ? first : second;
+
+		keys[victim] = key;
+		gs[victim] = g;
+		iterations[victim] = iteration;
+		++stores;
+		return false;
+	}
+
+	private boolean cutOrLower(int slot, int g) {
+		if (gs[slot] <= g) {
+			++hits;
+			return true;
+		}
+		gs[slot] = g;
+		return false;
+	}
+
+	/**
+	 * Number of states recorded since construction.
+	 * @return
+	 */
+	public long getStores() {
+		return stores;
+	}
+
+	/**
+	 * Number of cuts since construction.
+	 * @return
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+}
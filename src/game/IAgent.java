@@ -11,6 +11,14 @@ public interface IAgent {
 	 */
 	public void newLevel();
 	
+	/**
+	 * The current level times out at 'deadlineMillis' (System.currentTimeMillis()); called right after {@link #newLevel()},
+	 * only if the level has a timeout. Ignored by default.
+	 * @param deadlineMillis
+	 */
+	public default void deadline(long deadlineMillis) {
+	}
+	
 	/**
 	 * An agent receives current state of the board.
 	 * @param board
@@ -75,6 +75,7 @@ public class SokobanSim implements ISokobanGame, Runnable {
 			
 			try {
 				agent.newLevel();
+				if (config.timeoutMillis > 0) agent.deadline(startTime + config.timeoutMillis);
 			} catch (Exception e) {
 				onAgentException(e);
 				return;
@@ -0,0 +1,34 @@
+package game.actions.bits;
+
+import game.actions.EDirection;
+import game.actions.oop.EActionType;
+import game.board.bits.BoardBits;
+
+public abstract class BAction {
+	
+	public abstract EActionType getType();
+	
+	public abstract EDirection getDirection();
+
+	public abstract boolean isPossible(BoardBits board);
+	
+	public abstract void perform(BoardBits board);
+	
+	public abstract void reverse(BoardBits board);
+	
+	/**
+	 * If we move 1 step in given 'dir', will we still be at board? 
+	 * @param board
+	 * @param cell
+	 * @param dir
+	 * @return
+	 */
+	protected boolean onBoard(BoardBits board, int cell, EDirection dir) {
+		int targetX = board.cellX(cell) + dir.dX;
+		if (targetX < 0 || targetX >= board.width()) return false;
+		int targetY = board.cellY(cell) + dir.dY;
+		if (targetY < 0 || targetY >= board.height()) return false;
+		return true;
+	}
+	
+}
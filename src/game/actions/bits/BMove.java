@@ -0,0 +1,86 @@
+package game.actions.bits;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.actions.EDirection;
+import game.actions.oop.EActionType;
+import game.board.bits.BoardBits;
+
+/**
+ * MOVE ONLY, if there is a box, an edge or no free space, then the action is considered "not possible".
+ */
+public class BMove extends BAction {
+	
+	private static Map<EDirection, BMove> actions = new HashMap<EDirection, BMove>();
+	
+	static {
+		actions.put(EDirection.DOWN, new BMove(EDirection.DOWN));
+		actions.put(EDirection.UP, new BMove(EDirection.UP));
+		actions.put(EDirection.LEFT, new BMove(EDirection.LEFT));
+		actions.put(EDirection.RIGHT, new BMove(EDirection.RIGHT));
+	}
+	
+	public static Collection<BMove> getActions() {
+		return actions.values();
+	}
+	
+	public static BMove getAction(EDirection direction) {
+		return actions.get(direction);
+	}
+	
+	private EDirection dir;
+	
+	public BMove(EDirection dir) {
+		this.dir = dir;
+	}
+	
+	@Override
+	public EActionType getType() {
+		return EActionType.MOVE;
+	}
+
+	@Override
+	public EDirection getDirection() {
+		return dir;
+	}
+	
+	@Override
+	public boolean isPossible(BoardBits board) {
+		// PLAYER ON THE EDGE
+		if (!onBoard(board, board.playerCell, dir)) return false;
+		
+		// TILE TO THE DIR IS FREE
+		if (board.isFree(board.playerCell + board.dirOffset(dir))) return true;
+				
+		// TILE WE WISH TO MOVE TO IS NOT FREE
+		return false;
+	}
+		
+	/**
+	 * PERFORM THE MOVE, no validation, call {@link #isPossible(BoardBits)} first!
+	 * @param board
+	 */
+	@Override
+	public void perform(BoardBits board) {
+		// MOVE THE PLAYER
+		board.movePlayer(board.playerCell + board.dirOffset(dir));
+	}
+	
+	/**
+	 * REVERSE THE MOVE PRVIOUSLY DONE BY {@link #perform(BoardBits)}, no validation.
+	 * @param board
+	 */
+	@Override
+	public void reverse(BoardBits board) {
+		// REVERSE THE PLAYER
+		board.movePlayer(board.playerCell - board.dirOffset(dir));
+	}
+	
+	@Override
+	public String toString() {
+		return "BMove[" + dir.toString() + "]";
+	}
+
+}
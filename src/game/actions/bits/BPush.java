@@ -0,0 +1,103 @@
+package game.actions.bits;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.actions.EDirection;
+import game.actions.oop.EActionType;
+import game.board.bits.BoardBits;
+
+/**
+ * PUSH ONLY. If the player is not next to the box or there is nowhere to push the box, than the action is considered as not possible.
+ */
+public class BPush extends BAction {
+	
+	private static Map<EDirection, BPush> actions = new HashMap<EDirection, BPush>();
+	
+	static {
+		actions.put(EDirection.DOWN, new BPush(EDirection.DOWN));
+		actions.put(EDirection.UP, new BPush(EDirection.UP));
+		actions.put(EDirection.LEFT, new BPush(EDirection.LEFT));
+		actions.put(EDirection.RIGHT, new BPush(EDirection.RIGHT));
+	}
+	
+	public static Collection<BPush> getActions() {
+		return actions.values();
+	}
+	
+	public static BPush getAction(EDirection direction) {
+		return actions.get(direction);
+	}
+	
+	private EDirection dir;
+	
+	public BPush(EDirection dir) {
+		this.dir = dir;
+	}
+	
+	@Override
+	public EActionType getType() {
+		return EActionType.PUSH;
+	}
+
+	@Override
+	public EDirection getDirection() {
+		return dir;
+	}
+	
+	@Override
+	public boolean isPossible(BoardBits board) {
+		// PLAYER ON THE EDGE
+		if (!onBoard(board, board.playerCell, dir)) return false;
+		
+		int offset = board.dirOffset(dir);
+		int boxCell = board.playerCell + offset;
+		
+		// TILE TO THE DIR IS NOT BOX
+		if (!board.isBox(boxCell)) return false;
+		
+		// BOX IS ON THE EDGE IN THE GIVEN DIR
+		if (!onBoard(board, boxCell, dir)) return false;
+		
+		// TILE TO THE DIR OF THE BOX IS NOT FREE
+		if (!board.isFree(boxCell + offset)) return false;
+				
+		// YEP, WE CAN PUSH
+		return true;
+	}
+	
+	/**
+	 * PERFORM THE PUSH, no validation, call {@link #isPossible(BoardBits)} first!
+	 * @param board
+	 */
+	@Override
+	public void perform(BoardBits board) {
+		int offset = board.dirOffset(dir);
+		// MOVE THE BOX
+		board.moveBox(board.playerCell + offset, board.playerCell + offset + offset);
+		// MOVE THE PLAYER
+		board.movePlayer(board.playerCell + offset);
+	}
+	
+	/**
+	 * REVERSE THE ACTION PREVIOUSLY DONE BY {@link #perform(BoardBits)}, no validation.
+	 * @param board
+	 */
+	@Override
+	public void reverse(BoardBits board) {
+		int offset = board.dirOffset(dir);
+		// MARK PLAYER POSITION
+		int playerCell = board.playerCell;
+		// MOVE THE PLAYER
+		board.movePlayer(playerCell - offset);
+		// MOVE THE BOX
+		board.moveBox(playerCell + offset, playerCell);
+	}
+	
+	@Override
+	public String toString() {
+		return "BPush[" + dir.toString() + "]";
+	}
+
+}
@@ -28,8 +28,18 @@ public abstract class CAction {
 
 	public abstract boolean isPossible(BoardCompact board);
 	
+	/**
+	 * Performs the action on the 'board'; implementations go through {@link BoardCompact#movePlayer(int, int, int, int)}
+	 * and {@link BoardCompact#moveBox(int, int, int, int)} so {@link BoardCompact#zobrist()} is updated in O(1).
+	 * Enclose it within {@link BoardCompact#mark()} / {@link BoardCompact#undo()} to evaluate the successor in place.
+	 * @param board
+	 */
 	public abstract void perform(BoardCompact board);
 	
+	/**
+	 * Reverses the action previously done by {@link #perform(BoardCompact)}; {@link BoardCompact#zobrist()} is updated in O(1) as well.
+	 * @param board
+	 */
 	public abstract void reverse(BoardCompact board);
 	
 	/**
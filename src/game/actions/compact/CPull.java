@@ -0,0 +1,135 @@
+package game.actions.compact;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import game.actions.EDirection;
+import game.actions.oop.EActionType;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * PULL ONLY, the reverse of {@link CPush}; not a legal game action, it is meant for backward searches from the goal.
+ * <br/>
+ * The player steps in 'dir' and drags the box standing at the opposite side of the player along. If there is no box behind the player
+ * or the player cannot step in 'dir', the action is considered as not possible.
+ * <br/>
+ * Pulling in 'dir' and then pushing in 'dir'.opposite() returns the board to its original state.
+ * @author Jimmy
+ */
+public class CPull extends CAction {
+
+	private static Map<EDirection, CPull> actions = new HashMap<EDirection, CPull>();
+
+	static {
+		actions.put(EDirection.DOWN, new CPull(EDirection.DOWN));
+		actions.put(EDirection.UP, new CPull(EDirection.UP));
+		actions.put(EDirection.LEFT, new CPull(EDirection.LEFT));
+		actions.put(EDirection.RIGHT, new CPull(EDirection.RIGHT));
+	}
+
+	public static Collection<CPull> getActions() {
+		return actions.values();
+	}
+
+	public static CPull getAction(EDirection direction) {
+		return actions.get(direction);
+	}
+
+	private EDirection dir;
+
+	private EDirection[] dirs;
+
+	public CPull(EDirection dir) {
+		this.dir = dir;
+		this.dirs = new EDirection[]{ dir };
+	}
+
+	@Override
+	public EActionType getType() {
+		return EActionType.PULL;
+	}
+
+	/**
+	 * Direction the player (and the box) moves in.
+	 */
+	@Override
+	public EDirection getDirection() {
+		return dir;
+	}
+
+	@Override
+	public EDirection[] getDirections() {
+		return dirs;
+	}
+
+	@Override
+	public int getSteps() {
+		return 1;
+	}
+
+	@Override
+	public boolean isPossible(BoardCompact board) {
+		return isPullPossible(board, board.playerX, board.playerY, dir);
+	}
+
+	/**
+	 * Is it possible to pull the box from behind [playerX, playerY] by stepping in 'pullDirection' ?
+	 * @param board
+	 * @param playerX
+	 * @param playerY
+	 * @param pullDirection
+	 * @return
+	 */
+	public static boolean isPullPossible(BoardCompact board, int playerX, int playerY, EDirection pullDirection) {
+		// PLAYER ON THE EDGE
+		if (!CAction.isOnBoard(board, playerX, playerY, pullDirection)) return false;
+		if (!CAction.isOnBoard(board, playerX, playerY, pullDirection.opposite())) return false;
+
+		int offset = board.dirOffset(pullDirection);
+		int playerCell = board.cell(playerX, playerY);
+
+		// TILE BEHIND THE PLAYER IS NOT BOX
+		if (!CTile.isSomeBox(board.tileAt(playerCell - offset))) return false;
+
+		// TILE TO THE DIR OF THE PLAYER IS NOT FREE
+		if (!CTile.isFree(board.tileAt(playerCell + offset))) return false;
+
+		// YEP, WE CAN PULL
+		return true;
+	}
+
+	/**
+	 * PERFORM THE PULL, no validation, call {@link #isPossible(BoardCompact)} first!
+	 * @param board
+	 */
+	@Override
+	public void perform(BoardCompact board) {
+		// MARK PLAYER POSITION
+		int playerX = board.playerX;
+		int playerY = board.playerY;
+		// MOVE THE PLAYER
+		board.movePlayer(playerX, playerY, playerX + dir.dX, playerY + dir.dY);
+		// MOVE THE BOX
+		board.moveBox(playerX - dir.dX, playerY - dir.dY, playerX, playerY);
+	}
+
+	/**
+	 * REVERSE THE ACTION PREVIOUSLY DONE BY {@link #perform(BoardCompact)}, no validation; this is the push in the opposite direction.
+	 * @param board
+	 */
+	@Override
+	public void reverse(BoardCompact board) {
+		// MOVE THE BOX
+		board.moveBox(board.playerX - dir.dX, board.playerY - dir.dY, board.playerX - dir.dX - dir.dX, board.playerY - dir.dY - dir.dY);
+		// MOVE THE PLAYER
+		board.movePlayer(board.playerX, board.playerY, board.playerX - dir.dX, board.playerY - dir.dY);
+	}
+
+	@Override
+	public String toString() {
+		return "CPull[" + dir.toString() + "]";
+	}
+
+}
@@ -66,6 +66,24 @@ public class CPush extends CAction {
 		return isPushPossible(board, board.playerX, board.playerY, dir);
 	}
 	
+	/**
+	 * Cell ({@link BoardCompact#cell(int, int)}) of the box this push moves.
+	 * @param board the state BEFORE the push is performed
+	 * @return
+	 */
+	public int getBoxSource(BoardCompact board) {
+		return board.playerCell() + board.dirOffset(dir);
+	}
+	
+	/**
+	 * Cell ({@link BoardCompact#cell(int, int)}) the box ends at after this push.
+	 * @param board the state BEFORE the push is performed
+	 * @return
+	 */
+	public int getBoxTarget(BoardCompact board) {
+		return board.playerCell() + 2 * board.dirOffset(dir);
+	}
+	
 	/**
 	 * Is it possible to push the box from [playerX, playerY] in 'pushDirection' ?
 	 * @param board
@@ -78,14 +96,17 @@ public class CPush extends CAction {
 		// PLAYER ON THE EDGE
 		if (!CAction.isOnBoard(board, playerX, playerY, pushDirection)) return false;
 		
+		int offset = board.dirOffset(pushDirection);
+		int boxCell = board.cell(playerX, playerY) + offset;
+		
 		// TILE TO THE DIR IS NOT BOX
-		if (!CTile.isSomeBox(board.tile(playerX+pushDirection.dX, playerY+pushDirection.dY))) return false;
+		if (!CTile.isSomeBox(board.tileAt(boxCell))) return false;
 		
 		// BOX IS ON THE EDGE IN THE GIVEN DIR
 		if (!CAction.isOnBoard(board, playerX+pushDirection.dX, playerY+pushDirection.dY, pushDirection)) return false;
 		
 		// TILE TO THE DIR OF THE BOX IS NOT FREE
-		if (!CTile.isFree(board.tile(playerX+pushDirection.dX+pushDirection.dX, playerY+pushDirection.dY+pushDirection.dY))) return false;
+		if (!CTile.isFree(board.tileAt(boxCell + offset))) return false;
 				
 		// YEP, WE CAN PUSH
 		return true;
@@ -106,14 +127,17 @@ public class CPush extends CAction {
 		// PLAYER ON THE EDGE
 		if (!CAction.isOnBoard(board, playerX, playerY, pushDirection)) return false;
 		
+		int offset = board.dirOffset(pushDirection);
+		int boxCell = board.cell(playerX, playerY) + offset;
+		
 		// TILE TO THE DIR IS NOT BOX
-		if (!CTile.isSomeBox(board.tile(playerX+pushDirection.dX, playerY+pushDirection.dY))) return false;
+		if (!CTile.isSomeBox(board.tileAt(boxCell))) return false;
 		
 		// BOX IS ON THE EDGE IN THE GIVEN DIR
 		if (!CAction.isOnBoard(board, playerX+pushDirection.dX, playerY+pushDirection.dY, pushDirection)) return false;
 		
 		// TILE TO THE DIR OF THE BOX IS NOT FREE
-		if (!CTile.isWalkable(board.tile(playerX+pushDirection.dX+pushDirection.dX, playerY+pushDirection.dY+pushDirection.dY))) return false;
+		if (!CTile.isWalkable(board.tileAt(boxCell + offset))) return false;
 				
 		// YEP, WE CAN PUSH
 		return true;
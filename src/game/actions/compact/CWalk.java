@@ -53,6 +53,22 @@ public class CWalk extends CAction {
 		return path == null ? -1 : path.length;
 	}
 
+	/**
+	 * X coordinate the player walks to.
+	 * @return
+	 */
+	public int getX() {
+		return x;
+	}
+	
+	/**
+	 * Y coordinate the player walks to.
+	 * @return
+	 */
+	public int getY() {
+		return y;
+	}
+
 	@Override
 	public boolean isPossible(BoardCompact board) {
 		return CTile.isWalkable(board.tile(x, y));
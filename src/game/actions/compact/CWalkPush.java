@@ -31,6 +31,24 @@ public class CWalkPush extends CAction {
 	public EDirection getDirection() {
 		return walk.getDirection();
 	}
+	
+	/**
+	 * Cell ({@link BoardCompact#cell(int, int)}) of the box this action pushes; does not depend on where the player stands.
+	 * @param board any state of the level
+	 * @return
+	 */
+	public int getBoxSource(BoardCompact board) {
+		return board.cell(walk.getX(), walk.getY()) + board.dirOffset(push.getDirection());
+	}
+	
+	/**
+	 * Cell ({@link BoardCompact#cell(int, int)}) the pushed box ends at; does not depend on where the player stands.
+	 * @param board any state of the level
+	 * @return
+	 */
+	public int getBoxTarget(BoardCompact board) {
+		return board.cell(walk.getX(), walk.getY()) + 2 * board.dirOffset(push.getDirection());
+	}
 
 	@Override
 	public EDirection[] getDirections() {
@@ -6,6 +6,7 @@ public enum EActionType {
 	PUSH,
 	WALK,
 	WALK_AND_PUSH,
+	PULL,
 	INVALID;
 	
 }
@@ -0,0 +1,204 @@
+package game.board;
+
+import game.actions.EDirection;
+import game.board.bits.BoardBits;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.oop.Board;
+import game.board.slim.BoardSlim;
+
+/**
+ * Dense index of the playable floor of the level: every non-wall tile the player can reach from the start position
+ * (ignoring boxes) gets a number from 0 to {@link #size()}-1, in row-major order.
+ * <br/>
+ * Walls and floor outside the walls (e.g., the padding created by {@link utils.SokReader}) get no number.
+ * Arrays indexed by these numbers are therefore sized to the playable area only, which is what dead-square tables,
+ * distance tables or state keys need.
+ * <br/>
+ * Build it once per level and share it among all board representations ({@link Board}, {@link BoardCompact}, {@link BoardSlim}, {@link BoardBits}, ...);
+ * it depends on the static part of the level only.
+ */
+public final class CellIndex {
+
+	/**
+	 * Returned for tiles that are not part of the index.
+	 */
+	public static final int NONE = -1;
+	
+	public final int width;
+	
+	public final int height;
+	
+	/**
+	 * Number of indexed cells.
+	 */
+	private final int size;
+	
+	/**
+	 * [y * width + x] == index of the tile or {@link #NONE}.
+	 */
+	private final int[] indexOf;
+	
+	private final int[] xs;
+	
+	private final int[] ys;
+	
+	/**
+	 * [index * 4 + dir.index] == index of the neighbouring cell in 'dir' or {@link #NONE}.
+	 */
+	private final int[] neighbours;
+	
+	/**
+	 * Builds the index out of the OOP board.
+	 * @param board
+	 */
+	public CellIndex(Board board) {
+		this(board.width, board.height, wallsOf(board), board.player.getTileX(), board.player.getTileY());
+	}
+	
+	/**
+	 * Builds the index out of the compact board.
+	 * @param board
+	 */
+	public CellIndex(BoardCompact board) {
+		this(board.width(), board.height(), wallsOf(board), board.playerX, board.playerY);
+	}
+	
+	private CellIndex(int width, int height, boolean[] walls, int playerX, int playerY) {
+		this.width = width;
+		this.height = height;
+		
+		// FLOOD FILL THE FLOOR FROM THE PLAYER
+		boolean[] reachable = new boolean[width * height];
+		int[] stack = new int[width * height];
+		int top = 0;
+		stack[top++] = playerY * width + playerX;
+		reachable[playerY * width + playerX] = true;
+		while (top > 0) {
+			int cell = stack[--top];
+			int x = cell % width;
+			int y = cell / width;
+			for (EDirection dir : EDirection.arrows()) {
+				int nx = x + dir.dX;
+				int ny = y + dir.dY;
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+				int next = ny * width + nx;
+				if (walls[next] || reachable[next]) continue;
+				reachable[next] = true;
+				stack[top++] = next;
+			}
+		}
+		
+		// NUMBER THE CELLS
+		indexOf = new int[width * height];
+		int count = 0;
+		for (int cell = 0; cell < indexOf.length; ++cell) {
+			indexOf[cell] = reachable[cell] ? count++ : NONE;
+		}
+		size = count;
+		
+		xs = new int[size];
+		ys = new int[size];
+		neighbours = new int[size * 4];
+		for (int cell = 0; cell < indexOf.length; ++cell) {
+			int index = indexOf[cell];
+			if (index == NONE) continue;
+			int x = cell % width;
+			int y = cell / width;
+			xs[index] = x;
+			ys[index] = y;
+			for (EDirection dir : EDirection.arrows()) {
+				neighbours[index * 4 + dir.index] = indexOf(x + dir.dX, y + dir.dY);
+			}
+		}
+	}
+	
+	private static boolean[] wallsOf(Board board) {
+		boolean[] walls = new boolean[board.width * board.height];
+		for (int x = 0; x < board.width; ++x) {
+			for (int y = 0; y < board.height; ++y) {
+				walls[y * board.width + x] = board.tile(x, y).isWall();
+			}
+		}
+		return walls;
+	}
+	
+	private static boolean[] wallsOf(BoardCompact board) {
+		boolean[] walls = new boolean[board.width() * board.height()];
+		for (int cell = 0; cell < walls.length; ++cell) {
+			walls[cell] = CTile.isWall(board.tileAt(cell));
+		}
+		return walls;
+	}
+	
+	/**
+	 * Number of indexed cells == the size of the playable floor.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Index of [x;y] or {@link #NONE} if it is a wall, it is outside the playable floor or off the board.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int indexOf(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) return NONE;
+		return indexOf[y * width + x];
+	}
+	
+	/**
+	 * Index of the tile at 'boardCell' == y * width + x (the cell index of {@link BoardCompact} or {@link BoardBits}), or {@link #NONE}.
+	 * @param boardCell
+	 * @return
+	 */
+	public int indexOfCell(int boardCell) {
+		return indexOf[boardCell];
+	}
+	
+	/**
+	 * Whether [x;y] lies outside the reachable floor (walls, outer padding and enclosed unreachable floor).
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public boolean isOutside(int x, int y) {
+		return indexOf(x, y) == NONE;
+	}
+	
+	public int x(int index) {
+		return xs[index];
+	}
+	
+	public int y(int index) {
+		return ys[index];
+	}
+	
+	/**
+	 * Cell index of {@link BoardCompact} / {@link BoardBits} (y * width + x) of the indexed cell.
+	 * @param index
+	 * @return
+	 */
+	public int boardCell(int index) {
+		return ys[index] * width + xs[index];
+	}
+	
+	/**
+	 * Index of the neighbouring cell in 'dir' or {@link #NONE} if there is a wall.
+	 * @param index
+	 * @param dir one of {@link EDirection#arrows()}
+	 * @return
+	 */
+	public int neighbour(int index, EDirection dir) {
+		return neighbours[index * 4 + dir.index];
+	}
+	
+	@Override
+	public String toString() {
+		return "CellIndex[" + width + "x" + height + " -> " + size + " cells]";
+	}
+	
+}
@@ -0,0 +1,153 @@
+package game.board;
+
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.compact.LevelStatic;
+
+/**
+ * Simple dead squares of the level: floor cells from which a box can never reach any goal, even with no other box on the board.
+ * A box standing on such a cell means the level cannot be solved anymore.
+ * <br/>
+ * Computed by pulling a box backwards from every goal over the {@link CellIndex}: a box at 'c' can be pulled to 'c + dir'
+ * if both 'c + dir' (where the player stands) and 'c + 2 * dir' (where the player steps) are floor. Every cell a pull reaches
+ * is alive, all the others are dead. One breadth-first search per goal, each O(cells).
+ * <br/>
+ * The same searches give the goals each cell can reach ({@link #canReach(int, int)}), which {@link GoalMatching} assigns to the boxes.
+ * <br/>
+ * The result is a bitset over the board cells (y * width + x, as in {@link BoardCompact#tiles}); immutable once built, hence safe
+ * to use from any number of search threads at once. {@link #forLevel(BoardCompact)} keeps the squares of the last level,
+ * so all agents and engines working on the same level compute them once.
+ */
+public final class DeadSquares {
+
+	private static volatile DeadSquares last = null;
+
+	public final LevelStatic level;
+
+	/**
+	 * Floor of the level the squares were computed over.
+	 */
+	public final CellIndex cells;
+
+	/**
+	 * Bit 'cell' set == a box at 'cell' is dead.
+	 */
+	private final long[] dead;
+
+	private final int deadCount;
+
+	/**
+	 * Number of longs per cell in {@link #reach}.
+	 */
+	final int goalWords;
+
+	/**
+	 * [cell * goalWords + (goal >>> 6)] bit 'goal' set == a box at 'cell' can be pushed to the goal {@link LevelStatic#goalCells()}[goal]
+	 * with no other box on the board.
+	 */
+	final long[] reach;
+
+	/**
+	 * Dead squares of the level of the 'board'; reuses the ones computed last if the level is the same. Thread-safe.
+	 * @param board
+	 * @return
+	 */
+	public static DeadSquares forLevel(BoardCompact board) {
+		DeadSquares result = last;
+		if (result != null && result.level.isLevelOf(board)) return result;
+		result = new DeadSquares(board);
+		last = result;
+		return result;
+	}
+
+	public DeadSquares(BoardCompact board) {
+		level = new LevelStatic(board);
+		cells = new CellIndex(board);
+
+		// PULL BOXES AWAY FROM EVERY GOAL
+		int size = cells.size();
+		boolean[] alive = new boolean[size];
+		int[] visited = new int[size]; // [index] == 1 + goal of the last search that reached it
+		int[] queue = new int[size];
+		int[] goals = level.goalCells();
+		goalWords = (goals.length + 63) >>> 6;
+		reach = new long[level.cells * goalWords];
+		for (int g = 0; g < goals.length; ++g) {
+			int goal = cells.indexOfCell(goals[g]);
+			if (goal == CellIndex.NONE) continue;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = goal;
+			visited[goal] = g + 1;
+			while (head < tail) {
+				int box = queue[head++];
+				alive[box] = true;
+				reach[cells.boardCell(box) * goalWords + (g >>> 6)] |= 1L << g;
+				for (EDirection dir : EDirection.arrows()) {
+					int player = cells.neighbour(box, dir);
+					if (player == CellIndex.NONE || visited[player] == g + 1) continue;
+					if (cells.neighbour(player, dir) == CellIndex.NONE) continue;
+					visited[player] = g + 1;
+					queue[tail++] = player;
+				}
+			}
+		}
+
+		// EVERYTHING NOT REACHED IS DEAD
+		dead = new long[(level.cells + 63) >>> 6];
+		int count = 0;
+		for (int cell = 0; cell < level.cells; ++cell) {
+			if (level.isWall(cell) || level.isGoal(cell)) continue;
+			int index = cells.indexOfCell(cell);
+			if (index != CellIndex.NONE && alive[index]) continue;
+			dead[cell >>> 6] |= 1L << cell;
+			++count;
+		}
+		deadCount = count;
+	}
+
+	/**
+	 * Whether a box at the board 'cell' (y * width + x) can never reach a goal.
+	 * @param cell
+	 * @return
+	 */
+	public boolean isDead(int cell) {
+		return (dead[cell >>> 6] & (1L << cell)) != 0;
+	}
+
+	public boolean isDead(int x, int y) {
+		return isDead(y * level.width + x);
+	}
+
+	/**
+	 * Whether a box at the board 'cell' can be pushed to the goal {@link LevelStatic#goalCells()}[goal] when alone on the board.
+	 * @param cell
+	 * @param goal
+	 * @return
+	 */
+	public boolean canReach(int cell, int goal) {
+		return (reach[cell * goalWords + (goal >>> 6)] & (1L << goal)) != 0;
+	}
+
+	/**
+	 * Number of dead floor cells.
+	 * @return
+	 */
+	public int getDeadCount() {
+		return deadCount;
+	}
+
+	/**
+	 * Whether some box of the 'board' stands on a dead square; scans the whole board.
+	 * @param board
+	 * @return
+	 */
+	public boolean hasDeadBox(BoardCompact board) {
+		for (int cell = 0; cell < level.cells; ++cell) {
+			if (isDead(cell) && CTile.isSomeBox(board.tileAt(cell))) return true;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,247 @@
+package game.board;
+
+import java.util.Arrays;
+
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * Cheap deadlock checks of {@link BoardCompact} states, scoped to the box that was pushed last.
+ * <br/>
+ * A push moves a single box, so if the state before the push was not deadlocked, only patterns involving the pushed box can
+ * have appeared. {@link #isDeadlocked(BoardCompact, int)} therefore looks at the destination of the push only:
+ * <ol>
+ * <li>the {@link DeadSquares} bit of the cell;</li>
+ * <li>the four 2x2 squares containing the cell: if all their tiles are walls or boxes, none of those boxes can ever move,
+ *     which is a deadlock unless all of them are in place;</li>
+ * <li>freeze deadlocks ({@link #isFreezeDeadlock(BoardCompact, int)}): the pushed box or a box next to it can move along neither axis
+ *     and it, or a box freezing it, is not in place;</li>
+ * <li>the {@link GoalMatching} of all boxes: the boxes cannot be given distinct goals they can reach.</li>
+ * </ol>
+ * The first two are O(1), the freeze check visits the cluster of boxes around the pushed one (at most {@link #MAX_FREEZE_VISITS} boxes),
+ * the matching re-assigns the boxes that moved since the thread's last check, O(boxes) when it was of the parent or a sibling state.
+ * {@link #isDeadlocked(BoardCompact)} runs the local checks for every box and the matching once, for states of unknown origin.
+ * <br/>
+ * Safe to use from any number of search threads at once: the only mutable data are the marks of the freeze check and the matchings,
+ * kept per thread.
+ */
+public final class DeadlockDetector {
+
+	/**
+	 * Boxes a single freeze check examines at most; bigger clusters are reported as not frozen.
+	 */
+	public static final int MAX_FREEZE_VISITS = 256;
+
+	// results of the freeze check, ordered
+	private static final int NOT_FROZEN = 0;
+	private static final int FROZEN = 1;
+	private static final int FROZEN_MISPLACED = 2;
+
+	public final DeadSquares deadSquares;
+
+	public final GoalMatching matching;
+
+	private final int width;
+
+	private final int height;
+
+	private final ThreadLocal<FreezeMarks> freezeMarks;
+
+	public DeadlockDetector(DeadSquares deadSquares) {
+		this.deadSquares = deadSquares;
+		this.matching = new GoalMatching(deadSquares);
+		this.width = deadSquares.level.width;
+		this.height = deadSquares.level.height;
+		int cells = width * height;
+		this.freezeMarks = ThreadLocal.withInitial(() -> new FreezeMarks(cells));
+	}
+
+	/**
+	 * Detector over the {@link DeadSquares#forLevel(BoardCompact)} of the level of the 'board'.
+	 * @param board
+	 * @return
+	 */
+	public static DeadlockDetector forLevel(BoardCompact board) {
+		return new DeadlockDetector(DeadSquares.forLevel(board));
+	}
+
+	/**
+	 * Whether the box that has just been pushed to 'boxCell' made the 'board' unsolvable.
+	 * @param board state after the push; not altered
+	 * @param boxCell {@link BoardCompact#cell(int, int)} of the pushed box
+	 * @return
+	 */
+	public boolean isDeadlocked(BoardCompact board, int boxCell) {
+		return isLocalDeadlock(board, boxCell) || matching.isDeadlocked(board, boxCell);
+	}
+
+	/**
+	 * Whether some box of the 'board' is deadlocked; local checks of every box plus one {@link GoalMatching}.
+	 * @param board not altered
+	 * @return
+	 */
+	public boolean isDeadlocked(BoardCompact board) {
+		int cells = width * height;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell)) && isLocalDeadlock(board, cell)) return true;
+		}
+		return matching.isDeadlocked(board);
+	}
+
+	/**
+	 * Checks of {@link #isDeadlocked(BoardCompact, int)} but the matching: patterns involving the box at 'boxCell'.
+	 * @param board state after the push; not altered
+	 * @param boxCell {@link BoardCompact#cell(int, int)} of the pushed box
+	 * @return
+	 */
+	public boolean isLocalDeadlock(BoardCompact board, int boxCell) {
+		if (deadSquares.isDead(boxCell)) return true;
+
+		int x = boxCell % width;
+		int y = boxCell / width;
+		// 2x2 SQUARES, [x;y] being each of their corners in turn
+		for (int dy = -1; dy <= 0; ++dy) {
+			if (y + dy < 0 || y + dy + 1 >= height) continue;
+			for (int dx = -1; dx <= 0; ++dx) {
+				if (x + dx < 0 || x + dx + 1 >= width) continue;
+				if (isFrozenSquare(board, (y + dy) * width + x + dx)) return true;
+			}
+		}
+		return isFreezeDeadlock(board, boxCell);
+	}
+
+	// ======
+	// FREEZE
+	// ======
+
+	/**
+	 * Whether the box just pushed to 'boxCell' froze itself or one of its neighbouring boxes off goal.
+	 * <br/>
+	 * A box is frozen if it is blocked along both axes. It is blocked along an axis if there is a wall on either side, a dead square on both sides,
+	 * or a frozen box on either side, checked recursively. Boxes being checked count as walls, which stops cycles (boxes blocking each other
+	 * are frozen together). Allocates nothing.
+	 * @param board state after the push; not altered
+	 * @param boxCell {@link BoardCompact#cell(int, int)} of the pushed box
+	 * @return
+	 */
+	public boolean isFreezeDeadlock(BoardCompact board, int boxCell) {
+		FreezeMarks marks = freezeMarks.get();
+		if (freeze(board, marks.begin(), boxCell) == FROZEN_MISPLACED) return true;
+		// the pushed box may block a neighbour that is not in place, while being in place itself
+		if (isFreezeDeadlockAt(board, marks, boxCell - 1)) return true;
+		if (isFreezeDeadlockAt(board, marks, boxCell + 1)) return true;
+		if (isFreezeDeadlockAt(board, marks, boxCell - width)) return true;
+		if (isFreezeDeadlockAt(board, marks, boxCell + width)) return true;
+		return false;
+	}
+
+	private boolean isFreezeDeadlockAt(BoardCompact board, FreezeMarks marks, int cell) {
+		if (cell < 0 || cell >= marks.marks.length || !CTile.isSomeBox(board.tileAt(cell))) return false;
+		return freeze(board, marks.begin(), cell) == FROZEN_MISPLACED;
+	}
+
+	/**
+	 * @return {@link #NOT_FROZEN}, {@link #FROZEN} or {@link #FROZEN_MISPLACED} if the box or some box freezing it is not in place
+	 */
+	private int freeze(BoardCompact board, FreezeMarks marks, int cell) {
+		int mark = marks.marks[cell];
+		if (mark == marks.stamp) return FROZEN; // being checked == wall
+		if (mark == marks.stamp + 1) return NOT_FROZEN; // stays so with fewer boxes counted as walls
+		if (++marks.visits > MAX_FREEZE_VISITS) return NOT_FROZEN;
+
+		marks.marks[cell] = marks.stamp;
+		int result = blocked(board, marks, cell, 1, cell % width == 0, cell % width == width - 1);
+		if (result != NOT_FROZEN) {
+			int vertical = blocked(board, marks, cell, width, cell < width, cell + width >= marks.marks.length);
+			if (vertical == NOT_FROZEN) {
+				result = NOT_FROZEN;
+			} else if (vertical == FROZEN_MISPLACED || !isInPlace(board.tileAt(cell))) {
+				result = FROZEN_MISPLACED;
+			}
+		}
+		// frozen only given the boxes being checked now, forget it
+		marks.marks[cell] = result == NOT_FROZEN ? marks.stamp + 1 : 0;
+		return result;
+	}
+
+	/**
+	 * Whether the box at 'cell' cannot move along the axis given by 'offset' (1 == horizontal, width == vertical).
+	 */
+	private int blocked(BoardCompact board, FreezeMarks marks, int cell, int offset, boolean edgeBefore, boolean edgeAfter) {
+		if (edgeBefore || edgeAfter) return FROZEN;
+		int before = cell - offset;
+		int after = cell + offset;
+		int tileBefore = board.tileAt(before);
+		int tileAfter = board.tileAt(after);
+		if (CTile.isWall(tileBefore) || CTile.isWall(tileAfter)) return FROZEN;
+		if (deadSquares.isDead(before) && deadSquares.isDead(after)) return FROZEN;
+		if (CTile.isSomeBox(tileBefore)) {
+			int result = freeze(board, marks, before);
+			if (result != NOT_FROZEN) return result;
+		}
+		if (CTile.isSomeBox(tileAfter)) {
+			return freeze(board, marks, after);
+		}
+		return NOT_FROZEN;
+	}
+
+	/**
+	 * Whether the 2x2 square with top-left 'corner' is made of walls and boxes only, some of the boxes not in place.
+	 */
+	private boolean isFrozenSquare(BoardCompact board, int corner) {
+		int a = board.tileAt(corner);
+		int b = board.tileAt(corner + 1);
+		int c = board.tileAt(corner + width);
+		int d = board.tileAt(corner + width + 1);
+		if (!isBlocking(a) || !isBlocking(b) || !isBlocking(c) || !isBlocking(d)) return false;
+		return isMisplacedBox(a) || isMisplacedBox(b) || isMisplacedBox(c) || isMisplacedBox(d);
+	}
+
+	private static boolean isBlocking(int tile) {
+		return CTile.isWall(tile) || CTile.isSomeBox(tile);
+	}
+
+	private static boolean isMisplacedBox(int tile) {
+		return CTile.isSomeBox(tile) && !isInPlace(tile);
+	}
+
+	/**
+	 * Whether the box in 'tile' stands on a place for it, as counted by {@link BoardCompact#boxInPlaceCount}.
+	 * @param tile
+	 * @return
+	 */
+	public static boolean isInPlace(int tile) {
+		return CTile.forBox(CTile.getBoxNum(tile), tile) || CTile.forAnyBox(tile);
+	}
+
+	/**
+	 * Visited marks of one thread's freeze checks; a check takes a fresh 'stamp' instead of clearing 'marks'.
+	 */
+	private static final class FreezeMarks {
+
+		/**
+		 * [cell] == stamp: the box is being checked; stamp + 1: it is not frozen; anything else: unknown.
+		 */
+		final int[] marks;
+
+		int stamp = 0;
+
+		int visits;
+
+		FreezeMarks(int cells) {
+			marks = new int[cells];
+		}
+
+		FreezeMarks begin() {
+			stamp += 2;
+			if (stamp < 0) {
+				Arrays.fill(marks, 0);
+				stamp = 2;
+			}
+			visits = 0;
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,399 @@
+package game.board;
+
+import java.util.Arrays;
+
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.compact.LevelStatic;
+
+/**
+ * Bipartite deadlock check: every box needs a goal of its own that it can reach, see {@link DeadSquares#canReach(int, int)},
+ * and that accepts its color ({@link CTile#forBox(int, int)} or {@link CTile#forAnyBox(int)}). If no such assignment
+ * of all boxes exists, the state is dead, even if every box alone could still reach some goal, e.g., two boxes in a corridor
+ * leading to a single goal.
+ * <br/>
+ * The assignment is a maximum matching found by Hopcroft-Karp. It is incremental: each thread keeps the boxes and goals of its last check.
+ * {@link #isDeadlocked(BoardCompact, int)} finds the boxes that moved since then without scanning the board: the kept boxes that are gone,
+ * and as the new ones the pushed box plus the cells the previous check saw emptied and the cell its player stood on (after a push,
+ * the pushed box came from there; siblings of a search node differ from each other by those). Boxes that did not move keep their goals, the others take a free goal or are augmented. A check is thus O(boxes) plus,
+ * typically, a look for a free goal; only if the moved boxes cannot be told this way, the floor of the {@link CellIndex} is scanned.
+ * Boxes off that floor are dead squares and left out.
+ * <br/>
+ * Safe to use from any number of search threads at once: the only mutable data are the matchings, kept per thread.
+ */
+public final class GoalMatching {
+
+	private static final int NONE = -1;
+
+	private static final int UNREACHED = Integer.MAX_VALUE;
+
+	public final DeadSquares deadSquares;
+
+	private final int goalCount;
+
+	private final int goalWords;
+
+	/**
+	 * [boxNum * goalWords + (goal >>> 6)] bit 'goal' set == the goal accepts boxes of number 'boxNum'.
+	 */
+	private final long[] colorGoals;
+
+	private final ThreadLocal<Matching> matchings;
+
+	public GoalMatching(DeadSquares deadSquares) {
+		this.deadSquares = deadSquares;
+		LevelStatic level = deadSquares.level;
+		int[] goals = level.goalCells();
+		goalCount = goals.length;
+		goalWords = deadSquares.goalWords;
+		colorGoals = new long[7 * goalWords];
+		for (int g = 0; g < goalCount; ++g) {
+			int tile = level.staticTile(goals[g]);
+			for (int boxNum = 1; boxNum <= 6; ++boxNum) {
+				if (CTile.forBox(boxNum, tile) || CTile.forAnyBox(tile)) {
+					colorGoals[boxNum * goalWords + (g >>> 6)] |= 1L << g;
+				}
+			}
+		}
+		int cells = level.cells;
+		int goalCount = this.goalCount;
+		matchings = ThreadLocal.withInitial(() -> new Matching(cells, goalCount));
+	}
+
+	/**
+	 * Whether the boxes of the 'board' cannot all be given distinct goals they can reach and that accept them; scans the board.
+	 * @param board not altered
+	 * @return
+	 */
+	public boolean isDeadlocked(BoardCompact board) {
+		if (board.boxCount > goalCount) return true;
+		Matching m = matchings.get();
+		rebuild(board, m);
+		m.lastPlayer = board.playerCell();
+		return !match(m);
+	}
+
+	/**
+	 * Same as {@link #isDeadlocked(BoardCompact)} for a 'board' where the box at 'boxCell' has just been pushed;
+	 * O(boxes) if the thread's last check was of the parent or of a sibling of the 'board'.
+	 * @param board not altered
+	 * @param boxCell {@link BoardCompact#cell(int, int)} of the pushed box
+	 * @return
+	 */
+	public boolean isDeadlocked(BoardCompact board, int boxCell) {
+		if (board.boxCount > goalCount) return true;
+		Matching m = matchings.get();
+		if (!update(board, boxCell, m)) rebuild(board, m);
+		m.lastPlayer = board.playerCell();
+		return !match(m);
+	}
+
+	// ==========
+	// BOXES DIFF
+	// ==========
+
+	/**
+	 * Applies the moves of boxes since the last check to 'm', if they can be told from 'boxCell', {@link Matching#lastPlayer} and {@link Matching#vacated}.
+	 * @return false if they cannot; 'm' is left untouched then
+	 */
+	private boolean update(BoardCompact board, int boxCell, Matching m) {
+		// GONE
+		int gone = 0;
+		for (int slot = 0; slot < m.boxCount; ++slot) {
+			int tile = board.tileAt(m.boxCell[slot]);
+			if (!CTile.isSomeBox(tile)) {
+				m.gone[gone++] = slot;
+			} else if (CTile.getBoxNum(tile) != m.boxNum[slot]) {
+				return false; // another box took the cell
+			}
+		}
+
+		// NEW, all of them must be among the candidates
+		int expected = board.boxCount - m.boxCount + gone;
+		int found = 0;
+		if (isNewBox(board, boxCell, m)) m.added[found++] = boxCell;
+		if (m.lastPlayer != boxCell && isNewBox(board, m.lastPlayer, m)) m.added[found++] = m.lastPlayer;
+		for (int i = 0; i < m.vacatedCount && found <= expected; ++i) {
+			int cell = m.vacated[i];
+			if (cell != boxCell && cell != m.lastPlayer && isNewBox(board, cell, m)) m.added[found++] = cell;
+		}
+		if (found != expected) return false;
+
+		// APPLY
+		m.vacatedCount = 0;
+		for (int i = gone - 1; i >= 0; --i) { // descending, remove() moves the last slot
+			int slot = m.gone[i];
+			m.vacated[m.vacatedCount++] = m.boxCell[slot];
+			remove(m, slot);
+		}
+		for (int i = 0; i < found; ++i) {
+			int cell = m.added[i];
+			add(m, cell, CTile.getBoxNum(board.tileAt(cell)), NONE);
+		}
+		return true;
+	}
+
+	/**
+	 * Whether a box on the floor stands at 'cell' and 'm' does not have it.
+	 */
+	private boolean isNewBox(BoardCompact board, int cell, Matching m) {
+		return cell >= 0 && m.boxSlot[cell] == NONE && CTile.isSomeBox(board.tileAt(cell)) && deadSquares.cells.indexOfCell(cell) != CellIndex.NONE;
+	}
+
+	/**
+	 * Replaces the boxes of 'm' by the boxes of the 'board'; the ones that did not move keep their goals.
+	 */
+	private void rebuild(BoardCompact board, Matching m) {
+		// KEEP THE OLD ASSIGNMENT ASIDE
+		int lastCount = m.boxCount;
+		System.arraycopy(m.boxCell, 0, m.lastCells, 0, lastCount);
+		m.vacatedCount = 0;
+		for (int slot = 0; slot < lastCount; ++slot) {
+			int cell = m.boxCell[slot];
+			int tile = board.tileAt(cell);
+			boolean kept = CTile.isSomeBox(tile) && CTile.getBoxNum(tile) == m.boxNum[slot];
+			m.lastGoal[cell] = kept ? m.boxGoal[slot] : NONE;
+			if (!kept) m.vacated[m.vacatedCount++] = cell;
+			m.boxSlot[cell] = NONE;
+		}
+		m.boxCount = 0;
+		Arrays.fill(m.goalBox, NONE);
+
+		// COLLECT BOXES
+		CellIndex floor = deadSquares.cells;
+		int floorSize = floor.size();
+		for (int i = 0; i < floorSize; ++i) {
+			int cell = floor.boardCell(i);
+			int tile = board.tileAt(cell);
+			if (!CTile.isSomeBox(tile)) continue;
+			int goal = m.lastGoal[cell];
+			int slot = add(m, cell, CTile.getBoxNum(tile), NONE);
+			if (goal != NONE && m.goalBox[goal] == NONE && isEdge(slot, goal, m)) {
+				m.boxGoal[slot] = goal;
+				m.goalBox[goal] = slot;
+			}
+		}
+
+		// FORGET THE OLD ASSIGNMENT
+		for (int i = 0; i < lastCount; ++i) {
+			m.lastGoal[m.lastCells[i]] = NONE;
+		}
+	}
+
+	private int add(Matching m, int cell, int boxNum, int goal) {
+		int slot = m.boxCount++;
+		m.boxCell[slot] = cell;
+		m.boxNum[slot] = boxNum;
+		m.boxGoal[slot] = goal;
+		m.boxSlot[cell] = slot;
+		if (goal != NONE) m.goalBox[goal] = slot;
+		return slot;
+	}
+
+	/**
+	 * Frees the goal of the 'slot' and moves the last slot into it.
+	 */
+	private void remove(Matching m, int slot) {
+		if (m.boxGoal[slot] != NONE) m.goalBox[m.boxGoal[slot]] = NONE;
+		m.boxSlot[m.boxCell[slot]] = NONE;
+		int last = --m.boxCount;
+		if (slot == last) return;
+		m.boxCell[slot] = m.boxCell[last];
+		m.boxNum[slot] = m.boxNum[last];
+		m.boxGoal[slot] = m.boxGoal[last];
+		m.boxSlot[m.boxCell[slot]] = slot;
+		if (m.boxGoal[slot] != NONE) m.goalBox[m.boxGoal[slot]] = slot;
+	}
+
+	// ========
+	// MATCHING
+	// ========
+
+	/**
+	 * Completes the matching of 'm'.
+	 * @return whether every box has a goal
+	 */
+	private boolean match(Matching m) {
+		int count = m.boxCount;
+		int free = 0;
+		for (int box = 0; box < count; ++box) {
+			if (m.boxGoal[box] == NONE) ++free;
+		}
+
+		// FREE GOALS FIRST, usually enough for the pushed box
+		for (int box = 0; box < count && free > 0; ++box) {
+			if (m.boxGoal[box] == NONE && takeFreeGoal(m, box)) --free;
+		}
+
+		// AUGMENT THE REST
+		while (free > 0 && layer(m)) {
+			for (int box = 0; box < count; ++box) {
+				if (m.boxGoal[box] == NONE && augment(m, box)) --free;
+			}
+		}
+		return free == 0;
+	}
+
+	private boolean isEdge(int box, int goal, Matching m) {
+		int word = goal >>> 6;
+		long bit = 1L << goal;
+		return (deadSquares.reach[m.boxCell[box] * goalWords + word] & colorGoals[m.boxNum[box] * goalWords + word] & bit) != 0;
+	}
+
+	/**
+	 * Gives the 'box' some goal no other box has, if there is one.
+	 */
+	private boolean takeFreeGoal(Matching m, int box) {
+		int reachBase = m.boxCell[box] * goalWords;
+		int colorBase = m.boxNum[box] * goalWords;
+		for (int word = 0; word < goalWords; ++word) {
+			long goals = deadSquares.reach[reachBase + word] & colorGoals[colorBase + word];
+			while (goals != 0) {
+				int goal = (word << 6) + Long.numberOfTrailingZeros(goals);
+				goals &= goals - 1;
+				if (m.goalBox[goal] == NONE) {
+					m.boxGoal[box] = goal;
+					m.goalBox[goal] = box;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Breadth-first layering of the boxes by alternating paths from the free ones.
+	 * @return whether some free goal is reachable, i.e., an augmenting path exists
+	 */
+	private boolean layer(Matching m) {
+		int head = 0;
+		int tail = 0;
+		for (int box = 0; box < m.boxCount; ++box) {
+			if (m.boxGoal[box] == NONE) {
+				m.depth[box] = 0;
+				m.queue[tail++] = box;
+			} else {
+				m.depth[box] = UNREACHED;
+			}
+		}
+		boolean found = false;
+		while (head < tail) {
+			int box = m.queue[head++];
+			int reachBase = m.boxCell[box] * goalWords;
+			int colorBase = m.boxNum[box] * goalWords;
+			for (int word = 0; word < goalWords; ++word) {
+				long goals = deadSquares.reach[reachBase + word] & colorGoals[colorBase + word];
+				while (goals != 0) {
+					int goal = (word << 6) + Long.numberOfTrailingZeros(goals);
+					goals &= goals - 1;
+					int owner = m.goalBox[goal];
+					if (owner == NONE) {
+						found = true;
+					} else if (m.depth[owner] == UNREACHED) {
+						m.depth[owner] = m.depth[box] + 1;
+						m.queue[tail++] = owner;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Depth-first search for an augmenting path from the 'box' along the layers of {@link #layer(Matching)}.
+	 */
+	private boolean augment(Matching m, int box) {
+		int reachBase = m.boxCell[box] * goalWords;
+		int colorBase = m.boxNum[box] * goalWords;
+		for (int word = 0; word < goalWords; ++word) {
+			long goals = deadSquares.reach[reachBase + word] & colorGoals[colorBase + word];
+			while (goals != 0) {
+				int goal = (word << 6) + Long.numberOfTrailingZeros(goals);
+				goals &= goals - 1;
+				int owner = m.goalBox[goal];
+				if (owner == NONE || (m.depth[owner] == m.depth[box] + 1 && augment(m, owner))) {
+					m.boxGoal[box] = goal;
+					m.goalBox[goal] = box;
+					return true;
+				}
+			}
+		}
+		m.depth[box] = UNREACHED; // dead end, do not try again in this phase
+		return false;
+	}
+
+	/**
+	 * One thread's matching, boxes [0; boxCount) kept in slots; it always holds the boxes of the thread's last check.
+	 */
+	private static final class Matching {
+
+		final int[] boxCell;
+
+		final int[] boxNum;
+
+		final int[] boxGoal;
+
+		int boxCount;
+
+		/**
+		 * [cell] slot of the box at 'cell' or {@link GoalMatching#NONE}.
+		 */
+		final int[] boxSlot;
+
+		/**
+		 * [goal] slot given the goal or {@link GoalMatching#NONE}.
+		 */
+		final int[] goalBox;
+
+		/**
+		 * Cells that held a box before the last check and did not after it, [0; vacatedCount).
+		 */
+		final int[] vacated;
+
+		int vacatedCount;
+
+		/**
+		 * Player cell of the last check.
+		 */
+		int lastPlayer = NONE;
+
+		final int[] depth;
+
+		final int[] queue;
+
+		/**
+		 * Scratch of {@link GoalMatching#update(BoardCompact, int, Matching)}: slots of the boxes gone, cells of the boxes added.
+		 */
+		final int[] gone;
+
+		final int[] added;
+
+		/**
+		 * Scratch of {@link GoalMatching#rebuild(BoardCompact, Matching)}: [cell] goal the box at 'cell' had or {@link GoalMatching#NONE};
+		 * 'lastCells' are the cells of the old boxes.
+		 */
+		final int[] lastGoal;
+
+		final int[] lastCells;
+
+		Matching(int cells, int goals) {
+			boxCell = new int[goals];
+			boxNum = new int[goals];
+			boxGoal = new int[goals];
+			boxSlot = new int[cells];
+			Arrays.fill(boxSlot, NONE);
+			goalBox = new int[goals];
+			Arrays.fill(goalBox, NONE);
+			vacated = new int[goals];
+			depth = new int[goals];
+			queue = new int[goals];
+			gone = new int[goals];
+			added = new int[goals + 2];
+			lastGoal = new int[cells];
+			Arrays.fill(lastGoal, NONE);
+			lastCells = new int[goals];
+		}
+
+	}
+
+}
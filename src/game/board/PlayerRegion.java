@@ -0,0 +1,150 @@
+package game.board;
+
+import java.util.Arrays;
+
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * Flood fill of the area the player can walk to without pushing any box, over {@link CellIndex} numbers.
+ * <br/>
+ * Reusable: the instance keeps its buffers and uses "stamps" instead of clearing them, so {@link #compute(BoardCompact)}
+ * costs O(region) and allocates nothing. Not thread-safe, use one instance per search thread.
+ */
+public final class PlayerRegion {
+
+	private final CellIndex cells;
+	
+	/**
+	 * reached[index] == stamp <=> index is within the region.
+	 */
+	private final int[] reached;
+	
+	/**
+	 * boxes[index] == stamp <=> there is a box at index; used by {@link #compute(int, int[])}.
+	 */
+	private final int[] boxes;
+	
+	private final int[] stack;
+	
+	private int stamp = 0;
+	
+	private int size;
+	
+	private int minIndex;
+	
+	public PlayerRegion(CellIndex cells) {
+		this.cells = cells;
+		this.reached = new int[cells.size()];
+		this.boxes = new int[cells.size()];
+		this.stack = new int[cells.size()];
+	}
+	
+	public CellIndex getCells() {
+		return cells;
+	}
+	
+	private void nextStamp() {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(boxes, 0);
+			stamp = 1;
+		}
+	}
+	
+	/**
+	 * Computes the region of the player of the 'board'.
+	 * @param board
+	 * @return {@link #minIndex()}
+	 */
+	public int compute(BoardCompact board) {
+		nextStamp();
+		int start = cells.indexOf(board.playerX, board.playerY);
+		reached[start] = stamp;
+		stack[0] = start;
+		int top = 1;
+		size = 1;
+		minIndex = start;
+		while (top > 0) {
+			int index = stack[--top];
+			for (EDirection dir : EDirection.arrows()) {
+				int next = cells.neighbour(index, dir);
+				if (next == CellIndex.NONE || reached[next] == stamp) continue;
+				if (CTile.isSomeBox(board.tileAt(cells.boardCell(next)))) continue;
+				reached[next] = stamp;
+				stack[top++] = next;
+				++size;
+				if (next < minIndex) minIndex = next;
+			}
+		}
+		return minIndex;
+	}
+	
+	/**
+	 * Computes the region of the 'player' given the box positions; all numbers are {@link CellIndex} numbers.
+	 * @param player
+	 * @param boxPositions
+	 * @return {@link #minIndex()}
+	 */
+	public int compute(int player, int[] boxPositions) {
+		return compute(player, boxPositions, boxPositions.length);
+	}
+	
+	/**
+	 * Computes the region of the 'player' given the first 'boxCount' box positions; all numbers are {@link CellIndex} numbers.
+	 * @param player
+	 * @param boxPositions
+	 * @param boxCount
+	 * @return {@link #minIndex()}
+	 */
+	public int compute(int player, int[] boxPositions, int boxCount) {
+		nextStamp();
+		for (int i = 0; i < boxCount; ++i) {
+			boxes[boxPositions[i]] = stamp;
+		}
+		reached[player] = stamp;
+		stack[0] = player;
+		int top = 1;
+		size = 1;
+		minIndex = player;
+		while (top > 0) {
+			int index = stack[--top];
+			for (EDirection dir : EDirection.arrows()) {
+				int next = cells.neighbour(index, dir);
+				if (next == CellIndex.NONE || reached[next] == stamp || boxes[next] == stamp) continue;
+				reached[next] = stamp;
+				stack[top++] = next;
+				++size;
+				if (next < minIndex) minIndex = next;
+			}
+		}
+		return minIndex;
+	}
+	
+	/**
+	 * Whether the player can walk to 'index' according to the last compute(...) call.
+	 * @param index
+	 * @return
+	 */
+	public boolean isReachable(int index) {
+		return reached[index] == stamp;
+	}
+	
+	/**
+	 * The smallest {@link CellIndex} number within the region of the last compute(...) call; the canonical player position.
+	 * @return
+	 */
+	public int minIndex() {
+		return minIndex;
+	}
+	
+	/**
+	 * Number of cells of the region of the last compute(...) call.
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	
+}
@@ -0,0 +1,134 @@
+package game.board;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import game.board.compact.BoardCompact;
+import game.board.compressed.BoardCompressed;
+import game.board.slim.BoardSlim;
+
+/**
+ * Per-level Zobrist tables used by {@link BoardCompact}, {@link BoardSlim} and {@link BoardCompressed} to maintain
+ * their 64-bit state keys incrementally.
+ * <br/>
+ * Every (entity, tile) pair gets its own random 64-bit number; the key of a state is the XOR of the numbers
+ * of all entities (player and boxes) on the board. Moving an entity is therefore O(1): XOR out the old tile, XOR in the new one.
+ * <br/>
+ * Static parts of the level (walls, places) are not hashed as they never change during the level.
+ * <br/>
+ * Tables are deterministic for given dimensions and are shared by all boards of those dimensions, see {@link #forLevel(int, int)}.
+ */
+public class Zobrist {
+
+	/**
+	 * Entity index of the player; boxes use their box number (1..6), see {@link #box(int, int, int)}.
+	 */
+	public static final int PLAYER = 0;
+
+	/**
+	 * Number of entity kinds we have keys for: player + 6 box colors.
+	 */
+	public static final int ENTITIES = 7;
+
+	private static final Map<Long, Zobrist> tables = new ConcurrentHashMap<Long, Zobrist>();
+
+	public final int width;
+
+	public final int height;
+
+	/**
+	 * [(y * width + x) * ENTITIES + entity]
+	 */
+	private final long[] keys;
+
+	private Zobrist(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.keys = new long[width * height * ENTITIES];
+		long seed = 0x5DEECE66DL ^ ((long)width << 32 | height);
+		for (int i = 0; i < keys.length; ++i) {
+			seed += 0x9E3779B97F4A7C15L;
+			keys[i] = mix64(seed);
+		}
+	}
+
+	/**
+	 * Returns the (shared) table for the level of given dimensions.
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static Zobrist forLevel(int width, int height) {
+		Long id = (long)width << 32 | height;
+		Zobrist result = tables.get(id);
+		if (result == null) {
+			result = new Zobrist(width, height);
+			Zobrist previous = tables.putIfAbsent(id, result);
+			if (previous != null) result = previous;
+		}
+		return result;
+	}
+
+	/**
+	 * Key of the 'entity' ({@link #PLAYER} or box number 1..6) standing at [x;y].
+	 * @param entity
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long key(int entity, int x, int y) {
+		return keys[(y * width + x) * ENTITIES + entity];
+	}
+
+	/**
+	 * Key of the player standing at [x;y].
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long player(int x, int y) {
+		return keys[(y * width + x) * ENTITIES + PLAYER];
+	}
+
+	/**
+	 * Key of the box 'boxNum' (1..6) standing at [x;y]; use boxNum 1 for boards that do not distinguish box colors.
+	 * @param boxNum
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long box(int boxNum, int x, int y) {
+		return keys[(y * width + x) * ENTITIES + boxNum];
+	}
+
+	/**
+	 * Key of the player standing at 'cell' == y * width + x.
+	 * @param cell
+	 * @return
+	 */
+	public long player(int cell) {
+		return keys[cell * ENTITIES + PLAYER];
+	}
+
+	/**
+	 * Key of the box 'boxNum' (1..6) standing at 'cell' == y * width + x.
+	 * @param boxNum
+	 * @param cell
+	 * @return
+	 */
+	public long box(int boxNum, int cell) {
+		return keys[cell * ENTITIES + boxNum];
+	}
+
+	/**
+	 * SplitMix64 finalizer.
+	 * @param z
+	 * @return
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
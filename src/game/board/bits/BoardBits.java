@@ -0,0 +1,257 @@
+package game.board.bits;
+
+import game.actions.EDirection;
+import game.board.compact.BoardCompact;
+import game.board.oop.EEntity;
+import game.board.oop.EPlace;
+import game.board.oop.ESpace;
+
+/**
+ * Bitboard representation of the Sokoban board; obtain one via {@link BoardCompact#makeBoardBits()}. Ignores colors of boxes and places.
+ * <br/>
+ * Cells are indexed the same way as {@link BoardCompact#tiles}, i.e., cell == y * {@link #width()} + x, and every cell
+ * is represented by a single bit of {@link #walls}, {@link #goals} and {@link #boxes} planes.
+ * <br/>
+ * {@link #walls} and {@link #goals} never change during the level and are shared among clones, 
+ * therefore {@link #clone()} copies just the {@link #boxes} plane (a few longs) and the player position.
+ */
+public class BoardBits implements Cloneable {
+
+	private int width;
+	private int height;
+	
+	/**
+	 * Index delta of a single step in given direction, indexed by {@link EDirection#index}; shared among clones.
+	 */
+	private int[] dirOffsets;
+	
+	/**
+	 * Static plane, shared among clones; do not alter.
+	 */
+	public long[] walls;
+	
+	/**
+	 * Static plane, shared among clones; do not alter.
+	 */
+	public long[] goals;
+	
+	/**
+	 * Dynamic plane, one bit per box.
+	 */
+	public long[] boxes;
+	
+	public int playerCell;
+	
+	public int boxCount;
+	
+	private BoardBits() {
+	}
+	
+	public BoardBits(int width, int height) {
+		this.width = width;
+		this.height = height;
+		int words = planeLength(width * height);
+		walls = new long[words];
+		goals = new long[words];
+		boxes = new long[words];
+		dirOffsets = new int[EDirection.arrows().length];
+		for (EDirection dir : EDirection.arrows()) {
+			dirOffsets[dir.index] = dir.dY * width + dir.dX;
+		}
+	}
+	
+	/**
+	 * How many longs we need for a plane of 'cells' bits.
+	 * @param cells
+	 * @return
+	 */
+	public static int planeLength(int cells) {
+		return (cells + 63) >>> 6;
+	}
+	
+	public static boolean get(long[] plane, int cell) {
+		return (plane[cell >>> 6] & (1L << cell)) != 0;
+	}
+	
+	public static void set(long[] plane, int cell) {
+		plane[cell >>> 6] |= 1L << cell;
+	}
+	
+	public static void clear(long[] plane, int cell) {
+		plane[cell >>> 6] &= ~(1L << cell);
+	}
+	
+	@Override
+	public BoardBits clone() {
+		BoardBits result = new BoardBits();
+		result.width = width;
+		result.height = height;
+		result.dirOffsets = dirOffsets;
+		result.walls = walls;
+		result.goals = goals;
+		result.boxes = boxes.clone();
+		result.playerCell = playerCell;
+		result.boxCount = boxCount;
+		return result;
+	}
+	
+	@Override
+	public int hashCode() {
+		long hash = playerCell * 0x9E3779B97F4A7C15L;
+		for (int i = 0; i < boxes.length; ++i) {
+			hash = (hash ^ boxes[i]) * 0xBF58476D1CE4E5B9L;
+		}
+		return (int)(hash ^ (hash >>> 32));
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) return false;
+		if (this == obj) return true;
+		if (!(obj instanceof BoardBits)) return false;
+		BoardBits other = (BoardBits) obj;
+		if (playerCell != other.playerCell) return false;
+		if (boxes.length != other.boxes.length) return false;
+		for (int i = 0; i < boxes.length; ++i) {
+			if (boxes[i] != other.boxes[i]) return false;
+		}
+		return true;
+	}
+	
+	public int width() {
+		return width;
+	}
+	
+	public int height() {
+		return height;
+	}
+	
+	public int cell(int x, int y) {
+		return y * width + x;
+	}
+	
+	public int cellX(int cell) {
+		return cell % width;
+	}
+	
+	public int cellY(int cell) {
+		return cell / width;
+	}
+	
+	public int playerX() {
+		return playerCell % width;
+	}
+	
+	public int playerY() {
+		return playerCell / width;
+	}
+	
+	/**
+	 * How the cell index changes when moving one step in 'dir'; 'dir' must be one of {@link EDirection#arrows()}.
+	 * @param dir
+	 * @return
+	 */
+	public int dirOffset(EDirection dir) {
+		return dirOffsets[dir.index];
+	}
+	
+	public boolean isWall(int cell) {
+		return get(walls, cell);
+	}
+	
+	public boolean isGoal(int cell) {
+		return get(goals, cell);
+	}
+	
+	public boolean isBox(int cell) {
+		return get(boxes, cell);
+	}
+	
+	/**
+	 * No wall, no box, no player.
+	 * @param cell
+	 * @return
+	 */
+	public boolean isFree(int cell) {
+		int word = cell >>> 6;
+		return ((walls[word] | boxes[word]) & (1L << cell)) == 0 && cell != playerCell;
+	}
+	
+	public void movePlayer(int targetCell) {
+		playerCell = targetCell;
+	}
+	
+	public void moveBox(int sourceCell, int targetCell) {
+		clear(boxes, sourceCell);
+		set(boxes, targetCell);
+	}
+	
+	/**
+	 * Whether the board is in WIN-STATE == all boxes are in correct places, i.e., (boxes & ~goals) == 0.
+	 * 
+	 * @return
+	 */
+	public boolean isVictory() {
+		for (int i = 0; i < boxes.length; ++i) {
+			if ((boxes[i] & ~goals[i]) != 0) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * How many boxes are standing at goals.
+	 * @return
+	 */
+	public int boxInPlaceCount() {
+		int result = 0;
+		for (int i = 0; i < boxes.length; ++i) {
+			result += Long.bitCount(boxes[i] & goals[i]);
+		}
+		return result;
+	}
+	
+	/**
+	 * Prints the board into {@link System#out}.
+	 */
+	public void debugPrint() {
+		System.out.print(getBoardString());
+		System.out.println();
+	}
+	
+	/**
+	 * String representation of the board.
+	 * @return
+	 */
+	public String getBoardString() {
+		StringBuffer sb = new StringBuffer();
+		
+		for (int y = 0; y < height; ++y) {
+			if (y != 0) sb.append("\n");
+			for (int x = 0; x < width; ++x) {
+				int cell = cell(x, y);
+				if (cell == playerCell) {
+					sb.append(EEntity.PLAYER.getSymbol());
+				} else
+				if (isBox(cell)) {
+					sb.append(EEntity.BOX_1.getSymbol());
+				} else
+				if (isGoal(cell)) {
+					sb.append(EPlace.BOX_1.getSymbol());
+				} else
+				if (isWall(cell)) {
+					sb.append(ESpace.WALL.getSymbol());
+				} else {
+					sb.append(ESpace.FREE.getSymbol());
+				}
+			}
+		}
+		
+		return sb.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return "BoardBits[\n" + getBoardString() + "\n]";
+	}
+	
+}
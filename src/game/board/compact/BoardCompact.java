@@ -1,5 +1,8 @@
 package game.board.compact;
 
+import game.actions.EDirection;
+import game.board.Zobrist;
+import game.board.bits.BoardBits;
 import game.board.compressed.BoardCompressed;
 import game.board.compressed.MTile;
 import game.board.compressed.MTile.SubSlimTile;
@@ -14,19 +17,47 @@ import game.board.slim.STile;
 /**
  * More memory-compact representation of OOP-bulky {@link Board}.
  * 
- * BEWARE: once {@link #hashCode()} is called and you use {@link #moveBox(int, int, int, int)} or {@link #movePlayer(int, int, int, int)} it will
- *         force {@link #hashCode()} recomputation.
+ * {@link #hashCode()} is derived from the 64-bit {@link #zobrist()} key, which is computed once and then updated in O(1)
+ * by {@link #moveBox(int, int, int, int)} and {@link #movePlayer(int, int, int, int)}.
+ * 
+ * BEWARE: if you write into {@link #tiles} directly, call {@link #invalidateHash()} afterwards.
+ * 
+ * Successors can be evaluated in place: {@link #mark()}, {@link game.actions.compact.CAction#perform(BoardCompact)}, inspect, {@link #undo()};
+ * clone only those worth keeping.
+ * 
+ * {@link #clone()} and {@link #equalsState(BoardCompact)} are O(cells) as the tiles are kept flat, which is what makes every tile lookup
+ * of the actions O(1). Store search nodes as {@link StateCompact} (O(boxes) clone and equality) or as packed keys instead of board clones.
  * 
  * @author Jimmy
  */
 public class BoardCompact implements Cloneable {
 
-	private Integer hash = null;
+	/**
+	 * Shared per-level keys; resolved lazily, see {@link #zobrist()}.
+	 */
+	private Zobrist zobristTable = null;
+	
+	private long zobrist;
+	
+	private boolean zobristValid = false;
 	
 	/**
-	 * Compact representation of tiles.
+	 * Created by the first {@link #mark()}; never shared among clones.
 	 */
-	public int[][] tiles;
+	private BoardJournal journal = null;
+	
+	/**
+	 * Compact representation of tiles, stored row by row: tile [x;y] is at index {@link #cell(int, int)} == y * {@link #width()} + x.
+	 */
+	public int[] tiles;
+	
+	private int width;
+	private int height;
+	
+	/**
+	 * Index delta of a single step in given direction, indexed by {@link EDirection#index}; shared among clones.
+	 */
+	private int[] dirOffsets;
 	
 	public int playerX;
 	public int playerY;
@@ -38,121 +69,278 @@ public class BoardCompact implements Cloneable {
 	}
 	
 	public BoardCompact(int width, int height) {
-		tiles = new int[width][height];
-		for (int x = 0; x < width; ++x) {
-			for (int y = 0; y < height; ++y) {
-				tiles[x][y] = 0;
-			}			
+		this.width = width;
+		this.height = height;
+		tiles = new int[width * height];
+		dirOffsets = new int[EDirection.arrows().length];
+		for (EDirection dir : EDirection.arrows()) {
+			dirOffsets[dir.index] = dir.dY * width + dir.dX;
 		}
 	}
 	
 	@Override
 	public BoardCompact clone() {
 		BoardCompact result = new BoardCompact();
-		result.tiles = new int[width()][height()];
-		for (int x = 0; x < width(); ++x) {
-			for (int y = 0; y < height(); ++y) {
-				result.tiles[x][y] = tiles[x][y];
-			}			
-		}
+		result.width = width;
+		result.height = height;
+		result.dirOffsets = dirOffsets;
+		result.tiles = new int[tiles.length];
+		System.arraycopy(tiles, 0, result.tiles, 0, tiles.length);
 		result.playerX = playerX;
 		result.playerY = playerY;
 		result.boxCount = boxCount;
 		result.boxInPlaceCount = boxInPlaceCount;
+		result.zobristTable = zobristTable;
+		result.zobrist = zobrist;
+		result.zobristValid = zobristValid;
 		return result;
 	}
 	
-	@Override
-	public int hashCode() {
-		if (hash == null) {
-			hash = 0;
-			for (int x = 0; x < width(); ++x) {
-				for (int y = 0; y < height(); ++y) {
-					hash += (290317 * x + 97 * y) * tiles[x][y];
-				}		
+	/**
+	 * 64-bit Zobrist key of the current state (player position + boxes), see {@link Zobrist}.
+	 * 
+	 * The first call scans the board, following calls are O(1) as the key is kept up-to-date
+	 * by {@link #movePlayer(int, int, int, int)} and {@link #moveBox(int, int, int, int)}.
+	 * 
+	 * @return
+	 */
+	public long zobrist() {
+		if (!zobristValid) {
+			if (zobristTable == null) zobristTable = Zobrist.forLevel(width, height);
+			long key = 0;
+			for (int cell = 0; cell < tiles.length; ++cell) {
+				key ^= entityKey(tiles[cell], cell);
 			}
+			zobrist = key;
+			zobristValid = true;
 		}
-		return hash;
+		return zobrist;
+	}
+	
+	/**
+	 * Forces {@link #zobrist()} recomputation; needed only if you have altered {@link #tiles} directly.
+	 */
+	public void invalidateHash() {
+		zobristValid = false;
+	}
+	
+	/**
+	 * Used by {@link BoardJournal#undo(BoardCompact)}.
+	 */
+	void restoreHash(long zobrist, boolean zobristValid) {
+		this.zobrist = zobrist;
+		this.zobristValid = zobristValid;
+	}
+	
+	/**
+	 * Opens an undo mark: all following {@link #movePlayer(int, int, int, int)} and {@link #moveBox(int, int, int, int)} calls
+	 * (hence {@link game.actions.compact.CAction#perform(BoardCompact)} of any action) are journaled until the matching {@link #undo()} or {@link #commit()}.
+	 * Marks nest. Direct writes into {@link #tiles}, {@link #setState(StateMinimal)} and {@link #unsetState(StateMinimal)} are NOT journaled.
+	 */
+	public void mark() {
+		if (journal == null) journal = new BoardJournal();
+		journal.mark(playerX, playerY, boxInPlaceCount, zobrist, zobristValid);
+	}
+	
+	/**
+	 * Reverts the board to the state it had at the last {@link #mark()}, closing the mark.
+	 */
+	public void undo() {
+		if (journal == null) throw new RuntimeException("BoardCompact.undo() without matching mark().");
+		journal.undo(this);
+	}
+	
+	/**
+	 * Closes the last {@link #mark()} keeping all changes done since.
+	 */
+	public void commit() {
+		if (journal == null) throw new RuntimeException("BoardCompact.commit() without matching mark().");
+		journal.commit();
+	}
+	
+	/**
+	 * Number of open {@link #mark()}s.
+	 * @return
+	 */
+	public int markDepth() {
+		return journal == null ? 0 : journal.depth();
+	}
+	
+	private void journal(int source, int target) {
+		if (journal != null && journal.isRecording()) {
+			journal.record(source, tiles[source]);
+			journal.record(target, tiles[target]);
+		}
+	}
+	
+	/**
+	 * Zobrist key of the entity (if any) contained in 'tileFlag' standing at 'cell'.
+	 */
+	private long entityKey(int tileFlag, int cell) {
+		if (CTile.isPlayer(tileFlag)) return zobristTable.player(cell);
+		if (CTile.isSomeBox(tileFlag)) return zobristTable.box(CTile.getBoxNum(tileFlag), cell);
+		return 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		long key = zobrist();
+		return (int)(key ^ (key >>> 32));
 	}
 	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) return false;
 		if (this == obj) return true;
-		if (obj.hashCode() != hashCode()) return false;
-		if (!(obj instanceof BoardCompact)) return false;		
-		return equalsState((BoardCompact) obj);
+		if (!(obj instanceof BoardCompact)) return false;
+		BoardCompact other = (BoardCompact) obj;
+		if (other.zobrist() != zobrist()) return false;
+		return equalsState(other);
 	}
 	
 	public boolean equalsState(BoardCompact other) {
 		if (other == null) return false;
-		if (width() != other.width() || height() != other.height()) return false;
-		for (int x = 0; x < width(); ++x) {
-			for (int y = 0; y < height(); ++y) {
-				if (tiles[x][y] != other.tiles[x][y]) return false;
-			}			
+		if (width != other.width || height != other.height) return false;
+		for (int cell = 0; cell < tiles.length; ++cell) {
+			if (tiles[cell] != other.tiles[cell]) return false;
 		}
 		return true;
 	}
 	
 	public int width() {
-		return tiles.length;		
+		return width;		
 	}
 	
 	public int height() {
-		return tiles[0].length;
+		return height;
 	}
 	
 	public int tile(int x, int y) {
-		return tiles[x][y];
+		return tiles[y * width + x];
+	}
+	
+	/**
+	 * Tile flag at 'cell' index, see {@link #cell(int, int)}.
+	 * @param cell
+	 * @return
+	 */
+	public int tileAt(int cell) {
+		return tiles[cell];
+	}
+	
+	/**
+	 * Index of the tile [x;y] within {@link #tiles}.
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public int cell(int x, int y) {
+		return y * width + x;
+	}
+	
+	/**
+	 * X coordinate of the 'cell' index.
+	 * @param cell
+	 * @return
+	 */
+	public int cellX(int cell) {
+		return cell % width;
+	}
+	
+	/**
+	 * Y coordinate of the 'cell' index.
+	 * @param cell
+	 * @return
+	 */
+	public int cellY(int cell) {
+		return cell / width;
+	}
+	
+	/**
+	 * Index of the player tile within {@link #tiles}.
+	 * @return
+	 */
+	public int playerCell() {
+		return playerY * width + playerX;
+	}
+	
+	/**
+	 * How the cell index changes when moving one step in 'dir'; 'dir' must be one of {@link EDirection#arrows()}.
+	 * @param dir
+	 * @return
+	 */
+	public int dirOffset(EDirection dir) {
+		return dirOffsets[dir.index];
 	}
 	
 	/**
-	 * Fair warning: by moving the player you're invalidating {@link #hashCode()}...
+	 * Moves the player; updates {@link #zobrist()} in O(1).
 	 * @param sourceTileX
 	 * @param sourceTileY
 	 * @param targetTileX
 	 * @param targetTileY
 	 */
 	public void movePlayer(int sourceTileX, int sourceTileY, int targetTileX, int targetTileY) {
-		int entity = tiles[sourceTileX][sourceTileY] & EEntity.SOME_ENTITY_FLAG;
+		int source = sourceTileY * width + sourceTileX;
+		int target = targetTileY * width + targetTileX;
+		
+		journal(source, target);
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[source], source) ^ entityKey(tiles[target], target);
+		}
 		
-		tiles[targetTileX][targetTileY] &= EEntity.NULLIFY_ENTITY_FLAG;
-		tiles[targetTileX][targetTileY] |= entity;
+		int entity = tiles[source] & EEntity.SOME_ENTITY_FLAG;
 		
-		tiles[sourceTileX][sourceTileY] &= EEntity.NULLIFY_ENTITY_FLAG;
-		tiles[sourceTileX][sourceTileY] |= EEntity.NONE.getFlag();	
+		tiles[target] &= EEntity.NULLIFY_ENTITY_FLAG;
+		tiles[target] |= entity;
+		
+		tiles[source] &= EEntity.NULLIFY_ENTITY_FLAG;
+		tiles[source] |= EEntity.NONE.getFlag();	
 		
 		playerX = targetTileX;
 		playerY = targetTileY;
 		
-		hash = null;
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[target], target);
+		}
 	}
 	
 	/**
-	 * Fair warning: by moving the box you're invalidating {@link #hashCode()}...
+	 * Moves the box; updates {@link #zobrist()} in O(1).
 	 * @param sourceTileX
 	 * @param sourceTileY
 	 * @param targetTileX
 	 * @param targetTileY
 	 */
 	public void moveBox(int sourceTileX, int sourceTileY, int targetTileX, int targetTileY) {
-		int entity = tiles[sourceTileX][sourceTileY] & EEntity.SOME_ENTITY_FLAG;
-		int boxNum = CTile.getBoxNum(tiles[sourceTileX][sourceTileY]);
+		int source = sourceTileY * width + sourceTileX;
+		int target = targetTileY * width + targetTileX;
+		
+		journal(source, target);
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[source], source) ^ entityKey(tiles[target], target);
+		}
+		
+		int entity = tiles[source] & EEntity.SOME_ENTITY_FLAG;
+		int boxNum = CTile.getBoxNum(tiles[source]);
 
-		if (CTile.forBox(boxNum, tiles[targetTileX][targetTileY]) || CTile.forAnyBox(tiles[targetTileX][targetTileY])) {
+		if (CTile.forBox(boxNum, tiles[target]) || CTile.forAnyBox(tiles[target])) {
 			++boxInPlaceCount;
 		}
-		tiles[targetTileX][targetTileY] &= EEntity.NULLIFY_ENTITY_FLAG;
-		tiles[targetTileX][targetTileY] |= entity;
+		tiles[target] &= EEntity.NULLIFY_ENTITY_FLAG;
+		tiles[target] |= entity;
 		
-		if (CTile.forBox(boxNum, tiles[sourceTileX][sourceTileY]) || CTile.forAnyBox(tiles[sourceTileX][sourceTileY])) {
+		if (CTile.forBox(boxNum, tiles[source]) || CTile.forAnyBox(tiles[source])) {
 			--boxInPlaceCount;
 		}
-		tiles[sourceTileX][sourceTileY] &= EEntity.NULLIFY_ENTITY_FLAG;
-		tiles[sourceTileX][sourceTileY] |= EEntity.NONE.getFlag();
+		tiles[source] &= EEntity.NULLIFY_ENTITY_FLAG;
+		tiles[source] |= EEntity.NONE.getFlag();
 		
-		hash = null;
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[target], target);
+		}
 	}
 	
 	/**
@@ -169,17 +357,18 @@ public class BoardCompact implements Cloneable {
 	 * @param state
 	 */
 	public void setState(StateMinimal state) {
+		zobristValid = false;
 		playerX = state.getX(state.positions[0]);
 		playerY = state.getY(state.positions[0]);
 		boxInPlaceCount = 0;
 
-		tiles[playerX][playerY] = (tiles[playerX][playerY] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.PLAYER.getFlag();
+		int player = cell(playerX, playerY);
+		tiles[player] = (tiles[player] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.PLAYER.getFlag();
 		
 		for (int i = 1; i < state.positions.length; ++i) {
-			int x = state.getX(state.positions[i]);
-			int y = state.getY(state.positions[i]);
-			tiles[x][y] = (tiles[x][y] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.BOX_1.getFlag();
-			if (CTile.forSomeBox(tiles[x][y])) ++boxInPlaceCount;
+			int box = cell(state.getX(state.positions[i]), state.getY(state.positions[i]));
+			tiles[box] = (tiles[box] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.BOX_1.getFlag();
+			if (CTile.forSomeBox(tiles[box])) ++boxInPlaceCount;
 		}
 	}
 	
@@ -188,17 +377,18 @@ public class BoardCompact implements Cloneable {
 	 * @param state
 	 */
 	public void unsetState(StateMinimal state) {
+		zobristValid = false;
 
-		tiles[playerX][playerY] = (tiles[playerX][playerY] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
+		int player = cell(playerX, playerY);
+		tiles[player] = (tiles[player] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
 
 		playerX = -1;
 		playerY = -1;
 		boxInPlaceCount = -1;
 
 		for (int i = 1; i < state.positions.length; ++i) {
-			int x = state.getX(state.positions[i]);
-			int y = state.getY(state.positions[i]);
-			tiles[x][y] = (tiles[x][y] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
+			int box = cell(state.getX(state.positions[i]), state.getY(state.positions[i]));
+			tiles[box] = (tiles[box] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
 		}
 	}
 
@@ -220,9 +410,9 @@ public class BoardCompact implements Cloneable {
 		for (int y = 0; y < height(); ++y) {
 			if (y != 0) sb.append("\n");
 			for (int x = 0; x < width(); ++x) {
-				EEntity entity = EEntity.fromFlag(tiles[x][y]);
-				EPlace place = EPlace.fromFlag(tiles[x][y]);
-				ESpace space = ESpace.fromFlag(tiles[x][y]);
+				EEntity entity = EEntity.fromFlag(tile(x, y));
+				EPlace place = EPlace.fromFlag(tile(x, y));
+				ESpace space = ESpace.fromFlag(tile(x, y));
 				
 				if (entity != null && entity != EEntity.NONE) {
 					sb.append(entity.getSymbol());
@@ -283,6 +473,20 @@ public class BoardCompact implements Cloneable {
 		return result;
 	}
 	
+	public BoardBits makeBoardBits() {
+		BoardBits result = new BoardBits(width, height);
+		result.boxCount = boxCount;
+		result.playerCell = playerCell();
+		
+		for (int cell = 0; cell < tiles.length; ++cell) {
+			if (CTile.isWall(tiles[cell])) BoardBits.set(result.walls, cell);
+			if (CTile.forSomeBox(tiles[cell])) BoardBits.set(result.goals, cell);
+			if (CTile.isSomeBox(tiles[cell])) BoardBits.set(result.boxes, cell);
+		}
+		
+		return result;
+	}
+	
 	public BoardSlim makeBoardSlim() {
 		BoardSlim result = new BoardSlim((byte)width(), (byte)height());
 		result.boxCount = (byte)boxCount;
@@ -0,0 +1,109 @@
+package game.board.compact;
+
+import java.util.Arrays;
+
+/**
+ * Undo journal of a {@link BoardCompact}; see {@link BoardCompact#mark()} and {@link BoardCompact#undo()}.
+ * <br/>
+ * While at least one mark is open, {@link BoardCompact#movePlayer(int, int, int, int)} and {@link BoardCompact#moveBox(int, int, int, int)}
+ * record the original flags of the tiles they overwrite. {@link #undo(BoardCompact)} writes them back (newest first) and restores
+ * the player position, {@link BoardCompact#boxInPlaceCount} and {@link BoardCompact#zobrist()} saved by the matching mark.
+ * <br/>
+ * Both stacks are plain int/long arrays that only grow, so a search reusing one board allocates nothing per successor.
+ */
+class BoardJournal {
+
+	private int[] cells = new int[64];
+
+	private int[] oldTiles = new int[64];
+
+	private int size = 0;
+
+	private int[] frameStart = new int[16];
+
+	private int[] framePlayerX = new int[16];
+
+	private int[] framePlayerY = new int[16];
+
+	private int[] frameBoxInPlace = new int[16];
+
+	private long[] frameZobrist = new long[16];
+
+	private boolean[] frameZobristValid = new boolean[16];
+
+	private int depth = 0;
+
+	/**
+	 * Number of marks open.
+	 * @return
+	 */
+	int depth() {
+		return depth;
+	}
+
+	boolean isRecording() {
+		return depth > 0;
+	}
+
+	void mark(int playerX, int playerY, int boxInPlaceCount, long zobrist, boolean zobristValid) {
+		if (depth == frameStart.length) {
+			int length = depth * 2;
+			frameStart = Arrays.copyOf(frameStart, length);
+			framePlayerX = Arrays.copyOf(framePlayerX, length);
+			framePlayerY = Arrays.copyOf(framePlayerY, length);
+			frameBoxInPlace = Arrays.copyOf(frameBoxInPlace, length);
+			frameZobrist = Arrays.copyOf(frameZobrist, length);
+			frameZobristValid = Arrays.copyOf(frameZobristValid, length);
+		}
+		frameStart[depth] = size;
+		framePlayerX[depth] = playerX;
+		framePlayerY[depth] = playerY;
+		frameBoxInPlace[depth] = boxInPlaceCount;
+		frameZobrist[depth] = zobrist;
+		frameZobristValid[depth] = zobristValid;
+		++depth;
+	}
+
+	/**
+	 * Records that 'cell' held 'oldTile' before being overwritten.
+	 * @param cell
+	 * @param oldTile
+	 */
+	void record(int cell, int oldTile) {
+		if (size == cells.length) {
+			cells = Arrays.copyOf(cells, size * 2);
+			oldTiles = Arrays.copyOf(oldTiles, size * 2);
+		}
+		cells[size] = cell;
+		oldTiles[size] = oldTile;
+		++size;
+	}
+
+	/**
+	 * Reverts the 'board' to the state of the last mark and closes it.
+	 * @param board
+	 */
+	void undo(BoardCompact board) {
+		if (depth == 0) throw new RuntimeException("BoardCompact.undo() without matching mark().");
+		--depth;
+		int start = frameStart[depth];
+		for (int i = size - 1; i >= start; --i) {
+			board.tiles[cells[i]] = oldTiles[i];
+		}
+		size = start;
+		board.playerX = framePlayerX[depth];
+		board.playerY = framePlayerY[depth];
+		board.boxInPlaceCount = frameBoxInPlace[depth];
+		board.restoreHash(frameZobrist[depth], frameZobristValid[depth]);
+	}
+
+	/**
+	 * Closes the last mark keeping the changes; they become part of the enclosing mark (if any).
+	 */
+	void commit() {
+		if (depth == 0) throw new RuntimeException("BoardCompact.commit() without matching mark().");
+		--depth;
+		if (depth == 0) size = 0;
+	}
+
+}
@@ -0,0 +1,146 @@
+package game.board.compact;
+
+import game.actions.EDirection;
+import game.board.Zobrist;
+import game.board.oop.EEntity;
+
+/**
+ * Immutable, static part of the level (walls, places for boxes, dimensions) extracted from {@link BoardCompact}.
+ * <br/>
+ * Build it once per level and share it among all {@link StateCompact} instances of that level.
+ * <br/>
+ * Cells are indexed the same way as {@link BoardCompact#tiles}, i.e., cell == y * {@link #width} + x.
+ */
+public final class LevelStatic {
+
+	public final int width;
+	
+	public final int height;
+	
+	/**
+	 * width * height
+	 */
+	public final int cells;
+	
+	/**
+	 * Shared Zobrist keys of this level.
+	 */
+	public final Zobrist zobrist;
+	
+	/**
+	 * Tile flags with no entities in them.
+	 */
+	private final int[] statics;
+	
+	private final boolean[] walls;
+	
+	private final boolean[] goals;
+	
+	private final int[] goalCells;
+	
+	/**
+	 * [cell * 4 + dir.index] == neighbouring cell in 'dir' or -1 if it is off the board.
+	 */
+	private final int[] neighbours;
+	
+	public LevelStatic(BoardCompact board) {
+		width = board.width();
+		height = board.height();
+		cells = width * height;
+		zobrist = Zobrist.forLevel(width, height);
+		
+		statics = new int[cells];
+		walls = new boolean[cells];
+		goals = new boolean[cells];
+		neighbours = new int[cells * 4];
+		
+		int goalCount = 0;
+		for (int cell = 0; cell < cells; ++cell) {
+			int tile = board.tileAt(cell);
+			statics[cell] = (tile & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag();
+			walls[cell] = CTile.isWall(tile);
+			goals[cell] = CTile.forSomeBox(tile);
+			if (goals[cell]) ++goalCount;
+			
+			int x = cell % width;
+			int y = cell / width;
+			for (EDirection dir : EDirection.arrows()) {
+				int nx = x + dir.dX;
+				int ny = y + dir.dY;
+				neighbours[cell * 4 + dir.index] = (nx < 0 || nx >= width || ny < 0 || ny >= height) ? -1 : ny * width + nx;
+			}
+		}
+		
+		goalCells = new int[goalCount];
+		goalCount = 0;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (goals[cell]) goalCells[goalCount++] = cell;
+		}
+	}
+	
+	public int cell(int x, int y) {
+		return y * width + x;
+	}
+	
+	public int cellX(int cell) {
+		return cell % width;
+	}
+	
+	public int cellY(int cell) {
+		return cell / width;
+	}
+	
+	public boolean isWall(int cell) {
+		return walls[cell];
+	}
+	
+	/**
+	 * Is there a place for some box at 'cell'?
+	 * @param cell
+	 * @return
+	 */
+	public boolean isGoal(int cell) {
+		return goals[cell];
+	}
+	
+	/**
+	 * Tile flag of the 'cell' without any entity, see {@link CTile}.
+	 * @param cell
+	 * @return
+	 */
+	public int staticTile(int cell) {
+		return statics[cell];
+	}
+	
+	/**
+	 * Neighbouring cell of 'cell' in 'dir' or -1 if that would be off the board.
+	 * @param cell
+	 * @param dir one of {@link EDirection#arrows()}
+	 * @return
+	 */
+	public int neighbour(int cell, EDirection dir) {
+		return neighbours[cell * 4 + dir.index];
+	}
+	
+	/**
+	 * Whether the 'board' is of this level: same dimensions, walls and places for boxes (entities are ignored).
+	 * @param board
+	 * @return
+	 */
+	public boolean isLevelOf(BoardCompact board) {
+		if (board.width() != width || board.height() != height) return false;
+		for (int cell = 0; cell < cells; ++cell) {
+			if (((board.tileAt(cell) & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.NONE.getFlag()) != statics[cell]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * All cells with places for boxes, ascending; do not alter.
+	 * @return
+	 */
+	public int[] goalCells() {
+		return goalCells;
+	}
+	
+}
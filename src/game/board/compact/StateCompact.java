@@ -0,0 +1,229 @@
+package game.board.compact;
+
+import java.util.Arrays;
+
+import game.actions.EDirection;
+import game.board.oop.EEntity;
+
+/**
+ * Search-node state on top of the shared {@link LevelStatic}: the player cell plus the sorted array of box cells.
+ * <br/>
+ * Unlike {@link BoardCompact}, which copies all tiles, {@link #clone()}, {@link #equals(Object)} and {@link #hashCode()} cost O(boxes),
+ * which pays off on large and sparse levels. Use {@link #makeBoardCompact()} if you need the full board back.
+ * <br/>
+ * Cannot be used with multicolored-boxes.
+ */
+public class StateCompact implements Cloneable {
+
+	public final LevelStatic level;
+	
+	public int playerCell;
+	
+	/**
+	 * Box cells, ascending.
+	 */
+	private int[] boxes;
+	
+	private int boxInPlaceCount;
+	
+	/**
+	 * Zobrist key of the state, kept up-to-date by {@link #movePlayer(int)} and {@link #moveBox(int, int)}.
+	 */
+	private long zobrist;
+	
+	private StateCompact(LevelStatic level) {
+		this.level = level;
+	}
+	
+	/**
+	 * Extract the state from 'board'; 'level' must have been created from the same level.
+	 * @param level
+	 * @param board
+	 */
+	public StateCompact(LevelStatic level, BoardCompact board) {
+		this.level = level;
+		playerCell = board.playerCell();
+		boxes = new int[board.boxCount];
+		int index = 0;
+		for (int cell = 0; cell < level.cells; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell))) {
+				boxes[index++] = cell;
+				if (level.isGoal(cell)) ++boxInPlaceCount;
+			}
+		}
+		zobrist = level.zobrist.player(playerCell);
+		for (int box : boxes) {
+			zobrist ^= level.zobrist.box(1, box);
+		}
+	}
+	
+	@Override
+	public StateCompact clone() {
+		StateCompact result = new StateCompact(level);
+		result.playerCell = playerCell;
+		result.boxes = boxes.clone();
+		result.boxInPlaceCount = boxInPlaceCount;
+		result.zobrist = zobrist;
+		return result;
+	}
+	
+	public long zobrist() {
+		return zobrist;
+	}
+	
+	@Override
+	public int hashCode() {
+		return (int)(zobrist ^ (zobrist >>> 32));
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) return false;
+		if (this == obj) return true;
+		if (!(obj instanceof StateCompact)) return false;
+		StateCompact other = (StateCompact) obj;
+		if (zobrist != other.zobrist) return false;
+		if (playerCell != other.playerCell) return false;
+		return Arrays.equals(boxes, other.boxes);
+	}
+	
+	/**
+	 * Box cells, ascending; do not alter.
+	 * @return
+	 */
+	public int[] getBoxes() {
+		return boxes;
+	}
+	
+	public int boxCount() {
+		return boxes.length;
+	}
+	
+	public boolean isBox(int cell) {
+		return Arrays.binarySearch(boxes, cell) >= 0;
+	}
+	
+	/**
+	 * No wall, no box, no player.
+	 * @param cell
+	 * @return
+	 */
+	public boolean isFree(int cell) {
+		return !level.isWall(cell) && cell != playerCell && !isBox(cell);
+	}
+	
+	public void movePlayer(int targetCell) {
+		zobrist ^= level.zobrist.player(playerCell) ^ level.zobrist.player(targetCell);
+		playerCell = targetCell;
+	}
+	
+	/**
+	 * Moves the box from 'sourceCell' to 'targetCell' keeping {@link #getBoxes()} sorted; O(boxes).
+	 * @param sourceCell
+	 * @param targetCell
+	 */
+	public void moveBox(int sourceCell, int targetCell) {
+		int index = Arrays.binarySearch(boxes, sourceCell);
+		if (targetCell > sourceCell) {
+			while (index + 1 < boxes.length && boxes[index + 1] < targetCell) {
+				boxes[index] = boxes[index + 1];
+				++index;
+			}
+		} else {
+			while (index > 0 && boxes[index - 1] > targetCell) {
+				boxes[index] = boxes[index - 1];
+				--index;
+			}
+		}
+		boxes[index] = targetCell;
+		
+		if (level.isGoal(sourceCell)) --boxInPlaceCount;
+		if (level.isGoal(targetCell)) ++boxInPlaceCount;
+		
+		zobrist ^= level.zobrist.box(1, sourceCell) ^ level.zobrist.box(1, targetCell);
+	}
+	
+	/**
+	 * Can the player step into 'dir' (no push)?
+	 * @param dir
+	 * @return
+	 */
+	public boolean isMovePossible(EDirection dir) {
+		int target = level.neighbour(playerCell, dir);
+		return target >= 0 && isFree(target);
+	}
+	
+	/**
+	 * Can the player push the box next to the player in 'dir'?
+	 * @param dir
+	 * @return
+	 */
+	public boolean isPushPossible(EDirection dir) {
+		int box = level.neighbour(playerCell, dir);
+		if (box < 0 || !isBox(box)) return false;
+		int target = level.neighbour(box, dir);
+		return target >= 0 && isFree(target);
+	}
+	
+	/**
+	 * Moves the player one step in 'dir', no validation, call {@link #isMovePossible(EDirection)} first.
+	 * @param dir
+	 */
+	public void move(EDirection dir) {
+		movePlayer(level.neighbour(playerCell, dir));
+	}
+	
+	/**
+	 * Pushes the box in 'dir', no validation, call {@link #isPushPossible(EDirection)} first.
+	 * @param dir
+	 */
+	public void push(EDirection dir) {
+		int box = level.neighbour(playerCell, dir);
+		moveBox(box, level.neighbour(box, dir));
+		movePlayer(box);
+	}
+	
+	/**
+	 * Reverses {@link #push(EDirection)} previously done in 'dir', no validation.
+	 * @param dir
+	 */
+	public void unpush(EDirection dir) {
+		int box = level.neighbour(playerCell, dir);
+		movePlayer(level.neighbour(playerCell, dir.opposite()));
+		moveBox(box, level.neighbour(box, dir.opposite()));
+	}
+	
+	/**
+	 * Whether the board is in WIN-STATE == all boxes are in correct places.
+	 * @return
+	 */
+	public boolean isVictory() {
+		return boxInPlaceCount == boxes.length;
+	}
+	
+	/**
+	 * Materializes the full {@link BoardCompact} of this state.
+	 * @return
+	 */
+	public BoardCompact makeBoardCompact() {
+		BoardCompact result = new BoardCompact(level.width, level.height);
+		for (int cell = 0; cell < level.cells; ++cell) {
+			result.tiles[cell] = level.staticTile(cell);
+		}
+		result.tiles[playerCell] = (result.tiles[playerCell] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.PLAYER.getFlag();
+		for (int box : boxes) {
+			result.tiles[box] = (result.tiles[box] & EEntity.NULLIFY_ENTITY_FLAG) | EEntity.BOX_1.getFlag();
+		}
+		result.playerX = level.cellX(playerCell);
+		result.playerY = level.cellY(playerCell);
+		result.boxCount = boxes.length;
+		result.boxInPlaceCount = boxInPlaceCount;
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return "StateCompact[player=" + playerCell + ", boxes=" + Arrays.toString(boxes) + "]";
+	}
+	
+}
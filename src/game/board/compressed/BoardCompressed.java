@@ -1,5 +1,6 @@
 package game.board.compressed;
 
+import game.board.Zobrist;
 import game.board.compact.BoardCompact;
 import game.board.compressed.MTile.SubSlimTile;
 import game.board.oop.EEntity;
@@ -15,7 +16,14 @@ import game.board.slim.BoardSlim;
  */
 public class BoardCompressed {
 	
-	private Integer hash = null;
+	/**
+	 * Shared per-level keys; resolved lazily, see {@link #zobrist()}.
+	 */
+	private Zobrist zobristTable = null;
+	
+	private long zobrist;
+	
+	private boolean zobristValid = false;
 	
 	/**
 	 * Each int is storing information about 4 tiles (2x2 square), therefore the dimension of the array is 1/4 than compared to other BoardXXX implementations.
@@ -61,30 +69,60 @@ public class BoardCompressed {
 		result.playerY = playerY;
 		result.boxCount = boxCount;
 		result.boxInPlaceCount = boxInPlaceCount;
-		result.hash = hash;
+		result.zobristTable = zobristTable;
+		result.zobrist = zobrist;
+		result.zobristValid = zobristValid;
 		return result;
 	}
 	
-	@Override
-	public int hashCode() {
-		if (hash == null) {
-			hash = 0;
-			for (int x = 0; x < getCompressedWidth(); ++x) {
-				for (int y = 0; y < getCompressedHeight(); ++y) {
-					hash += (290317 * x + 97 * y) * tiles[x][y];
-				}			
+	/**
+	 * 64-bit Zobrist key of the current state (player position + boxes), see {@link Zobrist}.
+	 * Computed on the first call, then kept up-to-date in O(1) by {@link #movePlayer(int, int, int, int)} and {@link #moveBox(int, int, int, int)}.
+	 * @return
+	 */
+	public long zobrist() {
+		if (!zobristValid) {
+			if (zobristTable == null) zobristTable = Zobrist.forLevel(width(), height());
+			long key = 0;
+			for (int x = 0; x < width(); ++x) {
+				for (int y = 0; y < height(); ++y) {
+					key ^= entityKey(x, y);
+				}
 			}
+			zobrist = key;
+			zobristValid = true;
 		}
-		return hash;
+		return zobrist;
+	}
+	
+	/**
+	 * Forces {@link #zobrist()} recomputation; needed only if you have altered {@link #tiles} directly.
+	 */
+	public void invalidateHash() {
+		zobristValid = false;
+	}
+	
+	private long entityKey(int x, int y) {
+		SubSlimTile subSlimTile = MTile.getSubSlimTile(x, y);
+		int compressed = tile(x, y);
+		if (MTile.isPlayer(subSlimTile, compressed)) return zobristTable.player(x, y);
+		if (MTile.isBox(subSlimTile, compressed)) return zobristTable.box(1, x, y);
+		return 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		long key = zobrist();
+		return (int)(key ^ (key >>> 32));
 	}
 	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) return false;
 		if (this == obj) return true;
-		if (obj.hashCode() != hashCode()) return false;
 		if (!(obj instanceof BoardCompressed)) return false;		
-		BoardCompressed other = (BoardCompressed) obj;		
+		BoardCompressed other = (BoardCompressed) obj;
+		if (other.zobrist() != zobrist()) return false;
 		if (getCompressedWidth() != other.getCompressedWidth() || getCompressedHeight() != other.getCompressedHeight()) return false;
 		for (int x = 0; x < getCompressedWidth(); ++x) {
 			for (int y = 0; y < getCompressedHeight(); ++y) {
@@ -119,6 +157,10 @@ public class BoardCompressed {
 	}
 		
 	public void movePlayer(int sourceTileX, int sourceTileY, int targetTileX, int targetTileY) {
+		if (zobristValid) {
+			zobrist ^= entityKey(sourceTileX, sourceTileY) ^ entityKey(targetTileX, targetTileY);
+		}
+		
 		SubSlimTile sourceSubSlimTile = MTile.getSubSlimTile(sourceTileX, sourceTileY);
 		SubSlimTile targetSubSlimTile = MTile.getSubSlimTile(targetTileX, targetTileY);
 		
@@ -134,9 +176,17 @@ public class BoardCompressed {
 		
 		playerX = targetTileX;
 		playerY = targetTileY;
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(targetTileX, targetTileY);
+		}
 	}
 	
 	public void moveBox(int sourceTileX, int sourceTileY, int targetTileX, int targetTileY) {
+		if (zobristValid) {
+			zobrist ^= entityKey(sourceTileX, sourceTileY) ^ entityKey(targetTileX, targetTileY);
+		}
+		
 		SubSlimTile sourceSubSlimTile = MTile.getSubSlimTile(sourceTileX, sourceTileY);
 		SubSlimTile targetSubSlimTile = MTile.getSubSlimTile(targetTileX, targetTileY);
 		
@@ -155,6 +205,10 @@ public class BoardCompressed {
 			--boxInPlaceCount;
 		}
 		tiles[stx][sty] &= sourceSubSlimTile.getNullifyEntityFlag();
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(targetTileX, targetTileY);
+		}
 	}
 	
 	/**
@@ -9,7 +9,7 @@ import game.board.slim.STile;
 /**
  * To be used for marking state of Sokoban board; can be used only for boards with single type of boxes.
  * 
- * Can be used for boards up-to 2^5x2^5 = 32x32 big.
+ * Can be used for boards up-to 2^5x2^5 = 32x32 big; use {@link game.board.minimal.PackedState} for bigger boards.
  * 
  * @author Jimmy
  */
@@ -40,7 +40,7 @@ public class StateCompressed {
 	 * @param boxes
 	 */
 	public StateCompressed(BoardCompact board, int boxes) {
-		positions = new int[(boxes+1) / (POSITIONS_IN_INT) + ((((boxes+1) / (POSITIONS_IN_INT)) % POSITIONS_IN_INT) == 0 ? 0 : 1)];
+		positions = new int[positionsLength(boxes)];
 		
 		for (int i = 0; i < positions.length; ++i) {
 			positions[i] = 0;
@@ -71,7 +71,7 @@ public class StateCompressed {
 	 * @param boxes
 	 */
 	public StateCompressed(BoardSlim board, int boxes) {
-		positions = new int[(boxes+1) / (POSITIONS_IN_INT) + ((((boxes+1) / (POSITIONS_IN_INT)) % POSITIONS_IN_INT) == 0 ? 0 : 1)];
+		positions = new int[positionsLength(boxes)];
 		
 		for (int i = 0; i < positions.length; ++i) {
 			positions[i] = 0;
@@ -102,7 +102,7 @@ public class StateCompressed {
 	 * @param boxes
 	 */
 	public StateCompressed(BoardCompressed board, int boxes) {
-		positions = new int[(boxes+1) / (POSITIONS_IN_INT) + ((((boxes+1) / (POSITIONS_IN_INT)) % POSITIONS_IN_INT) == 0 ? 0 : 1)];
+		positions = new int[positionsLength(boxes)];
 		
 		for (int i = 0; i < positions.length; ++i) {
 			positions[i] = 0;
@@ -155,6 +155,15 @@ public class StateCompressed {
 		return true;
 	}
 	
+	/**
+	 * How many ints we need to store the player and 'boxes' positions.
+	 * @param boxes
+	 * @return
+	 */
+	private static int positionsLength(int boxes) {
+		return (boxes + 1 + POSITIONS_IN_INT - 1) / POSITIONS_IN_INT;
+	}
+	
 	private int addPosition(int position, int x, int y) {
 		position <<= INT_SHIFT;
 		position |= x;
@@ -0,0 +1,271 @@
+package game.board.minimal;
+
+import java.util.Arrays;
+
+import game.board.CellIndex;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+import game.board.compressed.BoardCompressed;
+import game.board.compressed.MTile;
+import game.board.slim.BoardSlim;
+import game.board.slim.STile;
+
+/**
+ * Runtime-part of the Sokoban game state (player + boxes) packed as tightly as the level allows; meant as the key for closed sets
+ * and no-good tables of big levels.
+ * <br/>
+ * Positions are {@link CellIndex} numbers, each stored in ceil(log2({@link CellIndex#size()})) bits: the player first,
+ * then all boxes in ascending order, so the same state always packs into the same bits. Unlike {@link game.board.compressed.StateCompressed}
+ * it is not limited by the board dimensions.
+ * <br/>
+ * The 64-bit hash is computed once during construction, see {@link #longHash()}.
+ * <br/>
+ * Cannot be used with multicolored-boxes.
+ */
+public class PackedState {
+	
+	private final long[] words;
+	
+	private final long hash;
+	
+	/**
+	 * Bits per position.
+	 */
+	private final byte bits;
+	
+	private final short boxes;
+	
+	/**
+	 * Packs the state given by CellIndex numbers; 'sortedBoxes' must be ascending.
+	 * @param cells
+	 * @param player
+	 * @param sortedBoxes
+	 */
+	public PackedState(CellIndex cells, int player, int[] sortedBoxes) {
+		this.bits = (byte)bitsFor(cells.size());
+		this.boxes = (short)sortedBoxes.length;
+		this.words = new long[wordsFor(bits, sortedBoxes.length)];
+		write(0, player);
+		for (int i = 0; i < sortedBoxes.length; ++i) {
+			write(i + 1, sortedBoxes[i]);
+		}
+		this.hash = computeHash(words);
+	}
+	
+	/**
+	 * Extract the state from 'board'.
+	 * @param cells index of the board's level
+	 * @param board
+	 */
+	public PackedState(CellIndex cells, BoardCompact board) {
+		this(cells, index(cells, board.playerX, board.playerY), boxesOf(cells, board));
+	}
+	
+	/**
+	 * Extract the state from 'board'.
+	 * @param cells index of the board's level
+	 * @param board
+	 */
+	public PackedState(CellIndex cells, BoardSlim board) {
+		this(cells, index(cells, board.playerX, board.playerY), boxesOf(cells, board));
+	}
+	
+	/**
+	 * Extract the state from 'board'.
+	 * @param cells index of the board's level
+	 * @param board
+	 */
+	public PackedState(CellIndex cells, BoardCompressed board) {
+		this(cells, index(cells, board.playerX, board.playerY), boxesOf(cells, board));
+	}
+	
+	/**
+	 * ceil(log2(cellCount)), at least 1.
+	 * @param cellCount
+	 * @return
+	 */
+	public static int bitsFor(int cellCount) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(cellCount - 1));
+	}
+	
+	/**
+	 * How many longs the state of 'boxCount' boxes takes given 'bits' per position.
+	 * @param bits
+	 * @param boxCount
+	 * @return
+	 */
+	public static int wordsFor(int bits, int boxCount) {
+		return ((boxCount + 1) * bits + 63) >>> 6;
+	}
+	
+	private static int index(CellIndex cells, int x, int y) {
+		int result = cells.indexOf(x, y);
+		if (result == CellIndex.NONE) throw new RuntimeException("Position [" + x + "," + y + "] is outside the playable floor.");
+		return result;
+	}
+	
+	private static int[] boxesOf(CellIndex cells, BoardCompact board) {
+		int[] result = new int[board.boxCount];
+		int count = 0;
+		for (int y = 0; y < board.height(); ++y) {
+			for (int x = 0; x < board.width(); ++x) {
+				if (CTile.isSomeBox(board.tile(x, y))) result[count++] = index(cells, x, y);
+			}
+		}
+		return result;
+	}
+	
+	private static int[] boxesOf(CellIndex cells, BoardSlim board) {
+		int[] result = new int[board.boxCount];
+		int count = 0;
+		for (int y = 0; y < board.height(); ++y) {
+			for (int x = 0; x < board.width(); ++x) {
+				if (STile.isBox(board.tile(x, y))) result[count++] = index(cells, x, y);
+			}
+		}
+		return result;
+	}
+	
+	private static int[] boxesOf(CellIndex cells, BoardCompressed board) {
+		int[] result = new int[board.boxCount];
+		int count = 0;
+		for (int y = 0; y < board.height() && y < cells.height; ++y) {
+			for (int x = 0; x < board.width() && x < cells.width; ++x) {
+				if (MTile.isBox(MTile.getSubSlimTile(x, y), board.tile(x, y))) result[count++] = index(cells, x, y);
+			}
+		}
+		return result;
+	}
+	
+	private void write(int slot, int value) {
+		write(words, 0, bits, slot, value);
+	}
+	
+	private int read(int slot) {
+		return read(words, 0, bits, slot);
+	}
+	
+	/**
+	 * ORs 'value' into the 'slot'-th position of the key stored in 'words' from 'from'; the slot must be zeroed.
+	 * Lets searches keep many keys in a single long[] pool, same layout as {@link #getWords()}.
+	 * @param words
+	 * @param from
+	 * @param bits
+	 * @param slot 0 for the player, i + 1 for the i-th box
+	 * @param value
+	 */
+	public static void write(long[] words, int from, int bits, int slot, int value) {
+		int position = slot * bits;
+		int word = from + (position >>> 6);
+		int offset = position & 63;
+		words[word] |= (long)value << offset;
+		if (offset + bits > 64) {
+			words[word + 1] |= (long)value >>> (64 - offset);
+		}
+	}
+	
+	/**
+	 * Reads the 'slot'-th position of the key stored in 'words' from 'from', see {@link #write(long[], int, int, int, int)}.
+	 * @param words
+	 * @param from
+	 * @param bits
+	 * @param slot
+	 * @return
+	 */
+	public static int read(long[] words, int from, int bits, int slot) {
+		int position = slot * bits;
+		int word = from + (position >>> 6);
+		int offset = position & 63;
+		long value = words[word] >>> offset;
+		if (offset + bits > 64) {
+			value |= words[word + 1] << (64 - offset);
+		}
+		return (int)(value & ((1L << bits) - 1));
+	}
+	
+	private static long computeHash(long[] words) {
+		return hash(words, 0, words.length);
+	}
+	
+	/**
+	 * Hash of the key stored in words[from .. from+length-1]; equals {@link #longHash()} of the same key.
+	 * @param words
+	 * @param from
+	 * @param length
+	 * @return
+	 */
+	public static long hash(long[] words, int from, int length) {
+		long h = 0x9E3779B97F4A7C15L * (length + 1);
+		for (int i = from; i < from + length; ++i) {
+			h = Long.rotateLeft(h ^ words[i], 27) * 0xBF58476D1CE4E5B9L;
+		}
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+	
+	/**
+	 * CellIndex number of the player.
+	 * @return
+	 */
+	public int getPlayer() {
+		return read(0);
+	}
+	
+	/**
+	 * CellIndex number of the i-th box (ascending).
+	 * @param i
+	 * @return
+	 */
+	public int getBox(int i) {
+		return read(i + 1);
+	}
+	
+	public int getBoxCount() {
+		return boxes;
+	}
+	
+	/**
+	 * Precomputed 64-bit hash of the state.
+	 * @return
+	 */
+	public long longHash() {
+		return hash;
+	}
+	
+	/**
+	 * Packed positions; do not alter.
+	 * @return
+	 */
+	public long[] getWords() {
+		return words;
+	}
+	
+	@Override
+	public int hashCode() {
+		return (int)(hash ^ (hash >>> 32));
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null) return false;
+		if (this == obj) return true;
+		if (obj.getClass() != getClass()) return false;
+		PackedState other = (PackedState) obj;
+		if (hash != other.hash) return false;
+		return Arrays.equals(words, other.words);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append(getClass().getSimpleName()).append("[player=").append(getPlayer()).append(", boxes=");
+		for (int i = 0; i < boxes; ++i) {
+			if (i != 0) sb.append(",");
+			sb.append(getBox(i));
+		}
+		sb.append("]");
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,134 @@
+package game.board.minimal;
+
+import game.board.CellIndex;
+import game.board.PlayerRegion;
+import game.board.Zobrist;
+import game.board.compact.BoardCompact;
+import game.board.compact.CTile;
+
+/**
+ * {@link PackedState} where the player position is replaced by the smallest {@link CellIndex} number of the area
+ * the player can walk to, see {@link PlayerRegion}.
+ * <br/>
+ * States that differ only in where the player stands within the same region are thus equal, which is what you want
+ * for duplicate detection when searching over pushes (not single steps).
+ * <br/>
+ * The static methods are the same rule for searches that keep keys in pools ({@link #write(long[], int, int, PlayerRegion, BoardCompact)})
+ * or as 64-bit Zobrist keys ({@link #zobrist(BoardCompact, PlayerRegion, Zobrist)}) instead of objects.
+ * <br/>
+ * Cannot be used with multicolored-boxes.
+ */
+public final class StateCanonical extends PackedState {
+
+	/**
+	 * Packs already normalized positions; 'regionMin' must be {@link PlayerRegion#minIndex()} and 'sortedBoxes' must be ascending.
+	 * @param cells
+	 * @param regionMin
+	 * @param sortedBoxes
+	 */
+	public StateCanonical(CellIndex cells, int regionMin, int[] sortedBoxes) {
+		super(cells, regionMin, sortedBoxes);
+	}
+	
+	/**
+	 * Extracts the canonical state of the 'board'; flood-fills the player region using 'region'.
+	 * @param region
+	 * @param board
+	 */
+	public StateCanonical(PlayerRegion region, BoardCompact board) {
+		super(region.getCells(), region.compute(board), boxesOf(region.getCells(), board));
+	}
+	
+	/**
+	 * Extracts the canonical state given CellIndex numbers; flood-fills the player region using 'region'.
+	 * @param region
+	 * @param player
+	 * @param sortedBoxes
+	 */
+	public StateCanonical(PlayerRegion region, int player, int[] sortedBoxes) {
+		super(region.getCells(), region.compute(player, sortedBoxes), sortedBoxes);
+	}
+	
+	/**
+	 * Packs the canonical state of the 'board' into 'words' from 'from' (zeroed), same layout as {@link #getWords()};
+	 * flood-fills the player region using 'region'.
+	 * @param words
+	 * @param from
+	 * @param bits {@link PackedState#bitsFor(int)} of the region's {@link CellIndex}
+	 * @param region
+	 * @param board
+	 * @return the canonical player position, {@link PlayerRegion#minIndex()}
+	 */
+	public static int write(long[] words, int from, int bits, PlayerRegion region, BoardCompact board) {
+		CellIndex cells = region.getCells();
+		int regionMin = region.compute(board);
+		PackedState.write(words, from, bits, 0, regionMin);
+		int slot = 1;
+		for (int index = 0; index < cells.size(); ++index) {
+			if (CTile.isSomeBox(board.tileAt(cells.boardCell(index)))) PackedState.write(words, from, bits, slot++, index);
+		}
+		return regionMin;
+	}
+
+	/**
+	 * Packs the canonical state given CellIndex numbers into 'words' from 'from' (zeroed), same layout as {@link #getWords()}.
+	 * @param words
+	 * @param from
+	 * @param bits
+	 * @param region computed for the 'sortedBoxes'
+	 * @param sortedBoxes
+	 */
+	public static void write(long[] words, int from, int bits, PlayerRegion region, int[] sortedBoxes) {
+		PackedState.write(words, from, bits, 0, region.minIndex());
+		for (int i = 0; i < sortedBoxes.length; ++i) {
+			PackedState.write(words, from, bits, i + 1, sortedBoxes[i]);
+		}
+	}
+
+	/**
+	 * Zobrist key of the canonical state: {@link BoardCompact#zobrist()} with the player moved to the smallest cell of its region.
+	 * @param board
+	 * @param region computed on the 'board'
+	 * @param zobrist keys of the 'board', {@link Zobrist#forLevel(int, int)}
+	 * @return
+	 */
+	public static long zobrist(BoardCompact board, PlayerRegion region, Zobrist zobrist) {
+		int canonical = region.getCells().boardCell(region.minIndex());
+		return board.zobrist() ^ zobrist.player(board.playerCell()) ^ zobrist.player(canonical);
+	}
+
+	/**
+	 * Same key as {@link #zobrist(BoardCompact, PlayerRegion, Zobrist)} given CellIndex numbers.
+	 * @param zobrist
+	 * @param cells
+	 * @param regionMin {@link PlayerRegion#minIndex()}
+	 * @param boxes [0; count) in any order
+	 * @param count
+	 * @return
+	 */
+	public static long zobrist(Zobrist zobrist, CellIndex cells, int regionMin, int[] boxes, int count) {
+		long key = zobrist.player(cells.boardCell(regionMin));
+		for (int i = 0; i < count; ++i) {
+			key ^= zobrist.box(1, cells.boardCell(boxes[i]));
+		}
+		return key;
+	}
+
+	private static int[] boxesOf(CellIndex cells, BoardCompact board) {
+		int[] result = new int[board.boxCount];
+		int count = 0;
+		for (int index = 0; index < cells.size(); ++index) {
+			if (CTile.isSomeBox(board.tileAt(cells.boardCell(index)))) result[count++] = index;
+		}
+		return result;
+	}
+	
+	/**
+	 * The canonical player position, i.e., the smallest CellIndex number of the player region.
+	 * @return
+	 */
+	public int getRegionMin() {
+		return getPlayer();
+	}
+	
+}
@@ -142,7 +142,7 @@ public class Board implements Cloneable {
 		BoardCompact result = new BoardCompact(width, height);
 		for (int x = 0; x < width; ++x) {
 			for (int y = 0; y < height; ++y) {
-				result.tiles[x][y] = tile(x, y).computeTileFlag();
+				result.tiles[result.cell(x, y)] = tile(x, y).computeTileFlag();
 			}
 		}
 		
@@ -1,5 +1,6 @@
 package game.board.slim;
 
+import game.board.Zobrist;
 import game.board.compact.BoardCompact;
 import game.board.oop.EEntity;
 import game.board.oop.EPlace;
@@ -13,7 +14,14 @@ import game.board.oop.ESpace;
  */
 public class BoardSlim {
 	
-	private Integer hash = null;
+	/**
+	 * Shared per-level keys; resolved lazily, see {@link #zobrist()}.
+	 */
+	private Zobrist zobristTable = null;
+	
+	private long zobrist;
+	
+	private boolean zobristValid = false;
 	
 	public byte[][] tiles;
 	
@@ -48,30 +56,58 @@ public class BoardSlim {
 		result.playerY = playerY;
 		result.boxCount = boxCount;
 		result.boxInPlaceCount = boxInPlaceCount;
-		result.hash = hash;
+		result.zobristTable = zobristTable;
+		result.zobrist = zobrist;
+		result.zobristValid = zobristValid;
 		return result;
 	}
 	
-	@Override
-	public int hashCode() {
-		if (hash == null) {
-			hash = 0;
-			for (byte x = 0; x < width(); ++x) {
-				for (byte y = 0; y < height(); ++y) {
-					hash += (290317 * x + 97 * y) * tiles[x][y];
-				}			
+	/**
+	 * 64-bit Zobrist key of the current state (player position + boxes), see {@link Zobrist}.
+	 * Computed on the first call, then kept up-to-date in O(1) by {@link #movePlayer(byte, byte, byte, byte)} and {@link #moveBox(byte, byte, byte, byte)}.
+	 * @return
+	 */
+	public long zobrist() {
+		if (!zobristValid) {
+			if (zobristTable == null) zobristTable = Zobrist.forLevel(width(), height());
+			long key = 0;
+			for (int x = 0; x < width(); ++x) {
+				for (int y = 0; y < height(); ++y) {
+					key ^= entityKey(tiles[x][y], x, y);
+				}
 			}
+			zobrist = key;
+			zobristValid = true;
 		}
-		return hash;
+		return zobrist;
+	}
+	
+	/**
+	 * Forces {@link #zobrist()} recomputation; needed only if you have altered {@link #tiles} directly.
+	 */
+	public void invalidateHash() {
+		zobristValid = false;
+	}
+	
+	private long entityKey(byte tileSlimFlag, int x, int y) {
+		if (STile.isPlayer(tileSlimFlag)) return zobristTable.player(x, y);
+		if (STile.isBox(tileSlimFlag)) return zobristTable.box(1, x, y);
+		return 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		long key = zobrist();
+		return (int)(key ^ (key >>> 32));
 	}
 	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) return false;
 		if (this == obj) return true;
-		if (obj.hashCode() != hashCode()) return false;
 		if (!(obj instanceof BoardSlim)) return false;		
-		BoardSlim other = (BoardSlim) obj;		
+		BoardSlim other = (BoardSlim) obj;
+		if (other.zobrist() != zobrist()) return false;
 		if (width() != other.width() || height() != other.height()) return false;
 		for (byte x = 0; x < width(); ++x) {
 			for (byte y = 0; y < height(); ++y) {
@@ -98,6 +134,11 @@ public class BoardSlim {
 	}
 	
 	public void movePlayer(byte sourceTileX, byte sourceTileY, byte targetTileX, byte targetTileY) {
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[sourceTileX][sourceTileY], sourceTileX, sourceTileY)
+			         ^ entityKey(tiles[targetTileX][targetTileY], targetTileX, targetTileY);
+		}
+		
 		byte entity = (byte) (tiles[sourceTileX][sourceTileY] & STile.SOME_ENTITY_FLAG);
 		
 		tiles[targetTileX][targetTileY] &= STile.NULLIFY_ENTITY_FLAG;
@@ -108,9 +149,18 @@ public class BoardSlim {
 		
 		playerX = targetTileX;
 		playerY = targetTileY;
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[targetTileX][targetTileY], targetTileX, targetTileY);
+		}
 	}
 	
 	public void moveBox(byte sourceTileX, byte sourceTileY, byte targetTileX, byte targetTileY) {
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[sourceTileX][sourceTileY], sourceTileX, sourceTileY)
+			         ^ entityKey(tiles[targetTileX][targetTileY], targetTileX, targetTileY);
+		}
+		
 		byte entity = (byte)(tiles[sourceTileX][sourceTileY] & STile.SOME_ENTITY_FLAG);
 		
 		if ((tiles[targetTileX][targetTileY] & STile.PLACE_FLAG) > 0) {
@@ -124,6 +174,10 @@ public class BoardSlim {
 		}
 		tiles[sourceTileX][sourceTileY] &= STile.NULLIFY_ENTITY_FLAG;
 		tiles[sourceTileX][sourceTileY] |= STile.NONE_FLAG;
+		
+		if (zobristValid) {
+			zobrist ^= entityKey(tiles[targetTileX][targetTileY], targetTileX, targetTileY);
+		}
 	}
 	
 	/**
@@ -0,0 +1,58 @@
+package game.board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import game.board.bits.BoardBits;
+
+public class BoardBitsTest_Memory {
+
+	private static void printMemory() {
+		int mb = 1024*1024;
+		
+		//Getting the runtime reference from system
+		Runtime runtime = Runtime.getRuntime();
+		
+		System.out.println("############################################");
+		System.out.println("##### Heap utilization statistics [MB] #####");
+		System.out.println("############################################");
+		
+		//Print used memory
+		System.out.println("Used Memory:" 
+			+ (runtime.totalMemory() - runtime.freeMemory()) / mb + " MB");
+
+		//Print free memory
+		System.out.println("Free Memory:" 
+			+ runtime.freeMemory() / mb);
+		
+		//Print total available memory
+		System.out.println("Total Memory:" + runtime.totalMemory() / mb + " MB");
+
+		//Print Maximum available memory
+		System.out.println("Max Memory:" + runtime.maxMemory() / mb + " MB");
+		
+		System.out.println("############################################");
+	}
+	
+	public static void main(String[] args) {
+		long count = 0;
+		
+		List<BoardBits> boards = new ArrayList<BoardBits>();
+		
+		// walls and goals are shared among clones, only boxes are per-state
+		BoardBits level = new BoardBits(16,16);
+		BoardBits board;
+		
+		while (true) {
+			board = level.clone();
+			boards.add(board);
+			++count;
+			if (count % 100 == 0) {
+				printMemory();
+				System.out.println("COUNT = " + count);
+				System.out.println("###########################################");
+			}
+		}
+	}
+	
+}
@@ -54,12 +54,38 @@ public class SokobanActionsTest {
 		System.out.println("---// TEST OK //---");
 	}
 	
+	//@Test
+	public void testBoardBits() {
+		System.out.println("=== TESTING ACTIONS ON BOARD - BITS ===");
+		List<Board> boards = SokobanBoards.loadBoards();
+		for (Board board : boards) {
+			ValidatingAgent agent = new ValidatingAgent(board);
+			System.out.println("Testing: " + board.level);
+			agent.validateBoardBits();
+		}
+		System.out.println("---// TEST OK //---");
+	}
+	
+	//@Test
+	public void testStateCompact() {
+		System.out.println("=== TESTING ACTIONS ON STATE - COMPACT ===");
+		List<Board> boards = SokobanBoards.loadBoards();
+		for (Board board : boards) {
+			ValidatingAgent agent = new ValidatingAgent(board);
+			System.out.println("Testing: " + board.level);
+			agent.validateStateCompact();
+		}
+		System.out.println("---// TEST OK //---");
+	}
+	
 	public static void main(String[] args) {
 		SokobanActionsTest test = new SokobanActionsTest();
 		
 		//test.testBoardOOP();
 		//test.testBoardCompact();
 		//test.testBoardSlim();
+		//test.testBoardBits();
+		//test.testStateCompact();
 		test.testBoardCompressed();
 	}
 
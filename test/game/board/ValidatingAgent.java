@@ -1,6 +1,11 @@
 package game.board;
 
+import java.util.Arrays;
+
 import game.actions.EDirection;
+import game.actions.bits.BAction;
+import game.actions.bits.BMove;
+import game.actions.bits.BPush;
 import game.actions.compact.CAction;
 import game.actions.compact.CMove;
 import game.actions.compact.CPush;
@@ -11,8 +16,11 @@ import game.actions.oop.*;
 import game.actions.slim.SAction;
 import game.actions.slim.SMove;
 import game.actions.slim.SPush;
+import game.board.bits.BoardBits;
 import game.board.compact.BoardCompact;
 import game.board.compact.CTile;
+import game.board.compact.LevelStatic;
+import game.board.compact.StateCompact;
 import game.board.compressed.BoardCompressed;
 import game.board.compressed.MTile;
 import game.board.compressed.MTile.SubSlimTile;
@@ -117,7 +125,45 @@ public class ValidatingAgent {
 		}
 	}
 	
+	/**
+	 * The incrementally updated {@link BoardCompact#zobrist()} must equal the key computed from scratch.
+	 */
+	private void checkZobrist(BoardCompact board, String msg) {
+		BoardCompact fresh = board.clone();
+		fresh.invalidateHash();
+		if (board.zobrist() != fresh.zobrist()) {
+			throw new RuntimeException("ZOBRIST DIFFERS FROM RECOMPUTED: " + msg);
+		}
+	}
+	
+	/**
+	 * Performing the 'action' between {@link BoardCompact#mark()} and {@link BoardCompact#undo()} must restore the 'board' exactly:
+	 * tiles, player, boxInPlaceCount and the zobrist key.
+	 */
+	private void checkUndo(BoardCompact board, CAction action, String msg) {
+		BoardCompact clone = board.clone();
+		clone.mark();
+		action.perform(clone);
+		clone.undo();
+		if (!Arrays.equals(board.tiles, clone.tiles)) {
+			throw new RuntimeException("UNDO TILES DIFFER: " + msg);
+		}
+		if (board.playerX != clone.playerX || board.playerY != clone.playerY) {
+			throw new RuntimeException("UNDO PLAYER DIFFERS: " + msg);
+		}
+		if (board.boxInPlaceCount != clone.boxInPlaceCount) {
+			throw new RuntimeException("UNDO BOX IN PLACE COUNT DIFFERS: " + msg);
+		}
+		if (board.zobrist() != clone.zobrist()) {
+			throw new RuntimeException("UNDO ZOBRIST DIFFERS: " + msg);
+		}
+		if (clone.markDepth() != 0) {
+			throw new RuntimeException("UNDO LEFT A MARK OPEN: " + msg);
+		}
+	}
+	
 	private void testPlayerActions(BoardCompact board) {
+		checkZobrist(board, "MOVE PLAYER");
 		for (EDirection direction : EDirection.arrows()) {
 			BoardCompact clone = board.clone();
 			
@@ -125,15 +171,19 @@ public class ValidatingAgent {
 			
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
+				checkUndo(board, action, "ACTION: " + action);
 			}
 			
 			action = CPush.getAction(direction);
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
+				checkUndo(board, action, "ACTION: " + action);
 			}
 		}
 	}
@@ -187,7 +237,19 @@ public class ValidatingAgent {
 		}
 	}
 	
+	/**
+	 * The incrementally updated {@link BoardCompressed#zobrist()} must equal the key computed from scratch.
+	 */
+	private void checkZobrist(BoardCompressed board, String msg) {
+		BoardCompressed fresh = board.clone();
+		fresh.invalidateHash();
+		if (board.zobrist() != fresh.zobrist()) {
+			throw new RuntimeException("ZOBRIST DIFFERS FROM RECOMPUTED: " + msg);
+		}
+	}
+	
 	private void testPlayerActions(BoardCompressed board) {
+		checkZobrist(board, "MOVE PLAYER");
 		for (EDirection direction : EDirection.arrows()) {
 			BoardCompressed clone = board.clone();
 			
@@ -195,6 +257,7 @@ public class ValidatingAgent {
 			
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
 			}
@@ -202,6 +265,7 @@ public class ValidatingAgent {
 			action = MPush.getAction(direction);
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
 			}
@@ -255,7 +319,19 @@ public class ValidatingAgent {
 		}
 	}
 	
+	/**
+	 * The incrementally updated {@link BoardSlim#zobrist()} must equal the key computed from scratch.
+	 */
+	private void checkZobrist(BoardSlim board, String msg) {
+		BoardSlim fresh = board.clone();
+		fresh.invalidateHash();
+		if (board.zobrist() != fresh.zobrist()) {
+			throw new RuntimeException("ZOBRIST DIFFERS FROM RECOMPUTED: " + msg);
+		}
+	}
+	
 	private void testPlayerActions(BoardSlim board) {
+		checkZobrist(board, "MOVE PLAYER");
 		for (EDirection direction : EDirection.arrows()) {
 			BoardSlim clone = board.clone();
 			
@@ -263,6 +339,7 @@ public class ValidatingAgent {
 			
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
 			}
@@ -270,6 +347,7 @@ public class ValidatingAgent {
 			action = SPush.getAction(direction);
 			if (action.isPossible(clone)) {
 				action.perform(clone);
+				checkZobrist(clone, "ACTION: " + action);
 				action.reverse(clone);
 				checkEqual(board, clone, "ACTION: " + action);
 			}
@@ -277,4 +355,167 @@ public class ValidatingAgent {
 	}
 		
 
+	// ============
+	// BOARD - BITS
+	// ============
+	
+	public void validateBoardBits() {
+		BoardBits bits = board.makeBoardCompact().makeBoardBits();
+				
+		BoardBits clone = bits.clone();
+		checkEqual(bits, clone, "CLONING");
+				
+		for (int cell = 0; cell < bits.width() * bits.height(); ++cell) {
+			clone = bits.clone();
+			
+			if (clone.isFree(cell)) {
+				clone.movePlayer(cell);
+			}
+			
+			// CHECK CLONING				
+			BoardBits clone2 = clone.clone();
+			checkEqual(clone, clone2, "CLONING");
+			
+			// TEST ACTIONS
+			testPlayerActions(clone);
+		}		
+	}
+	
+	private void checkEqual(BoardBits b1, BoardBits b2, String msg) {
+		if (b1.hashCode() != b2.hashCode()) {
+			System.out.println("HASH CODE DIFFERS: " + msg);
+			System.out.println("-- BOARD B1 ---");
+			b1.debugPrint();
+			System.out.println("-- BOARD B2 ---");
+			b2.debugPrint();
+			throw new RuntimeException("HASH CODE DIFFERS: " + msg);
+		}
+		if (!b1.equals(b2)) {
+			System.out.println("NOT EQUAL: " + msg);
+			System.out.println("-- BOARD B1 ---");
+			b1.debugPrint();
+			System.out.println("-- BOARD B2 ---");
+			b2.debugPrint();
+			throw new RuntimeException("NOT EQUAL: " + msg);
+		}
+	}
+	
+	private void testPlayerActions(BoardBits board) {
+		for (EDirection direction : EDirection.arrows()) {
+			BoardBits clone = board.clone();
+			
+			BAction action = BMove.getAction(direction);
+			
+			if (action.isPossible(clone)) {
+				action.perform(clone);
+				action.reverse(clone);
+				checkEqual(board, clone, "ACTION: " + action);
+			}
+			
+			action = BPush.getAction(direction);
+			if (action.isPossible(clone)) {
+				action.perform(clone);
+				action.reverse(clone);
+				checkEqual(board, clone, "ACTION: " + action);
+			}
+		}
+	}
+
+	// =============
+	// STATE COMPACT
+	// =============
+	
+	public void validateStateCompact() {
+		BoardCompact compact = board.makeBoardCompact();
+		LevelStatic level = new LevelStatic(compact);
+		
+		StateCompact state = new StateCompact(level, compact);
+		checkEqual(compact, state, "EXTRACTING");
+		checkEqual(state, state.clone(), "CLONING");
+		
+		for (int x = 0; x < compact.width(); ++x) {
+			for (int y = 0; y < compact.height(); ++y) {
+				BoardCompact clone = compact.clone();
+				
+				if (CTile.isFree(clone.tile(x, y))) {
+					clone.movePlayer(clone.playerX, clone.playerY, x, y);
+				}
+				
+				state = new StateCompact(level, clone);
+				checkEqual(clone, state, "EXTRACTING");
+				
+				// TEST ACTIONS
+				testPlayerActions(clone, state);
+			}
+		}
+	}
+	
+	/**
+	 * The 'state' must describe the same board as 'board', including its zobrist key and the ascending order of its boxes.
+	 */
+	private void checkEqual(BoardCompact board, StateCompact state, String msg) {
+		if (board.zobrist() != state.zobrist()) {
+			throw new RuntimeException("ZOBRIST DIFFERS FROM BOARD: " + msg);
+		}
+		if (!board.equalsState(state.makeBoardCompact())) {
+			throw new RuntimeException("NOT STATE EQUAL TO BOARD: " + msg);
+		}
+		int[] boxes = new int[board.boxCount];
+		int boxCount = 0;
+		for (int cell = 0; cell < board.tiles.length; ++cell) {
+			if (CTile.isSomeBox(board.tileAt(cell))) boxes[boxCount++] = cell;
+		}
+		if (!Arrays.equals(boxes, state.getBoxes())) {
+			throw new RuntimeException("BOXES NOT SORTED AS ON BOARD: " + msg);
+		}
+		if (board.isVictory() != state.isVictory()) {
+			throw new RuntimeException("VICTORY DIFFERS FROM BOARD: " + msg);
+		}
+	}
+	
+	private void checkEqual(StateCompact s1, StateCompact s2, String msg) {
+		if (s1.hashCode() != s2.hashCode()) {
+			throw new RuntimeException("HASH CODE DIFFERS: " + msg);
+		}
+		if (!s1.equals(s2)) {
+			throw new RuntimeException("NOT EQUAL: " + msg);
+		}
+	}
+	
+	/**
+	 * Replays every move and push on both the 'board' and the 'state' and compares them; pushes are also undone by {@link StateCompact#unpush(EDirection)}.
+	 */
+	private void testPlayerActions(BoardCompact board, StateCompact state) {
+		for (EDirection direction : EDirection.arrows()) {
+			BoardCompact boardClone = board.clone();
+			StateCompact stateClone = state.clone();
+			
+			CAction action = CMove.getAction(direction);
+			if (action.isPossible(boardClone) != stateClone.isMovePossible(direction)) {
+				throw new RuntimeException("MOVE POSSIBILITY DIFFERS: " + action);
+			}
+			if (action.isPossible(boardClone)) {
+				action.perform(boardClone);
+				stateClone.move(direction);
+				checkEqual(boardClone, stateClone, "ACTION: " + action);
+			}
+			
+			boardClone = board.clone();
+			stateClone = state.clone();
+			
+			action = CPush.getAction(direction);
+			if (action.isPossible(boardClone) != stateClone.isPushPossible(direction)) {
+				throw new RuntimeException("PUSH POSSIBILITY DIFFERS: " + action);
+			}
+			if (action.isPossible(boardClone)) {
+				action.perform(boardClone);
+				stateClone.push(direction);
+				checkEqual(boardClone, stateClone, "ACTION: " + action);
+				stateClone.unpush(direction);
+				checkEqual(board, stateClone, "UNPUSH: " + action);
+				checkEqual(state, stateClone, "UNPUSH: " + action);
+			}
+		}
+	}
+
 }